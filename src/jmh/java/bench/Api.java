@@ -0,0 +1,126 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+/**
+ * Handles on the GraphData API. JMH refuses benchmarks in the default package, and Java code
+ * in a named package cannot name default-package classes, so the benchmarks reach them here.
+ * The handles are static finals, which the JIT inlines like direct calls.
+ */
+final class Api {
+    private static final Class<?> GRAPH_DATA = type("GraphData");
+    private static final Class<?> STORAGE = type("GraphData$Storage");
+    private static final Class<?> ALGORITHM = type("GraphData$Algorithm");
+
+    private static final MethodHandle NEW = constructor(STORAGE);
+    private static final MethodHandle PARSE = method("parseGraph", String.class);
+    private static final MethodHandle PARSE_STREAMING = method("parseGraphStreaming", String.class);
+    private static final MethodHandle OUTPUT_DOT = method("outputDOTGraph", String.class);
+    private static final MethodHandle ADD_NODE = method("addNode", String.class);
+    private static final MethodHandle ADD_NODES = method("addNodes", Collection.class);
+    private static final MethodHandle ADD_EDGE = method("addEdge", String.class, String.class);
+    private static final MethodHandle ADD_EDGES = method("addEdges", String[][].class);
+    private static final MethodHandle SEARCH = method("GraphSearch", String.class, String.class, ALGORITHM);
+
+    private static final PrintStream CONSOLE = System.out;
+
+    private Api() {
+    }
+
+    // GraphData reports to stdout; muted during a trial so console I/O is not measured
+    static void mute() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static void unmute() {
+        System.setOut(CONSOLE);
+    }
+
+    static Object newGraph(String storage) {
+        try {
+            return NEW.invoke(constant(STORAGE, storage));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object algorithm(String name) {
+        return constant(ALGORITHM, name);
+    }
+
+    static boolean parseGraph(Object graph, String path) throws Throwable {
+        return (boolean) PARSE.invoke(graph, path);
+    }
+
+    static boolean parseGraphStreaming(Object graph, String path) throws Throwable {
+        return (boolean) PARSE_STREAMING.invoke(graph, path);
+    }
+
+    static boolean outputDOTGraph(Object graph, String path) throws Throwable {
+        return (boolean) OUTPUT_DOT.invoke(graph, path);
+    }
+
+    static boolean addNode(Object graph, String label) throws Throwable {
+        return (boolean) ADD_NODE.invoke(graph, label);
+    }
+
+    static boolean[] addNodes(Object graph, Collection<String> labels) throws Throwable {
+        return (boolean[]) ADD_NODES.invoke(graph, labels);
+    }
+
+    static boolean addEdge(Object graph, String src, String dst) throws Throwable {
+        return (boolean) ADD_EDGE.invoke(graph, src, dst);
+    }
+
+    static boolean[] addEdges(Object graph, String[][] edges) throws Throwable {
+        return (boolean[]) ADD_EDGES.invoke(graph, edges);
+    }
+
+    // Returns the Path, or null when there is none
+    static Object search(Object graph, String src, String dst, Object algorithm) throws Throwable {
+        return SEARCH.invoke(graph, src, dst, algorithm);
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Object constant(Class<?> type, String name) {
+        for (Object constant : type.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("No " + type.getSimpleName() + " named " + name);
+    }
+
+    private static MethodHandle constructor(Class<?>... parameters) {
+        try {
+            Constructor<?> constructor = GRAPH_DATA.getConstructor(parameters);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle method(String name, Class<?>... parameters) {
+        try {
+            Method method = GRAPH_DATA.getMethod(name, parameters);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// DOT import with each parser, and DOT export
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DotBenchmark {
+    @Param({"CHAIN", "GRID", "ERDOS_RENYI", "POWER_LAW"})
+    public GraphFamily family;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"DEFAULT", "COMPACT"})
+    public String storage;
+
+    private Object graph;
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Api.mute();
+        String[] labels = GraphFamily.labels(size);
+        graph = Api.newGraph(storage);
+        Api.addNodes(graph, Arrays.asList(labels));
+        Api.addEdges(graph, family.edges(labels));
+        input = Files.createTempFile("bench", ".dot");
+        output = Files.createTempFile("bench", ".dot");
+        Api.outputDOTGraph(graph, input.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+        Api.unmute();
+    }
+
+    @Benchmark
+    public Object parseGraph() throws Throwable {
+        Object parsed = Api.newGraph(storage);
+        Api.parseGraph(parsed, input.toString());
+        return parsed;
+    }
+
+    @Benchmark
+    public Object parseGraphStreaming() throws Throwable {
+        Object parsed = Api.newGraph(storage);
+        Api.parseGraphStreaming(parsed, input.toString());
+        return parsed;
+    }
+
+    @Benchmark
+    public boolean outputDOTGraph() throws Throwable {
+        return Api.outputDOTGraph(graph, output.toString());
+    }
+}
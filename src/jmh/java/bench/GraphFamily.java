@@ -0,0 +1,97 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic graphs with nodes "n0" .. "n(size-1)". The random families use a
+ * fixed seed, so every run and every fork benchmarks exactly the same graph. Edges reuse the
+ * label strings, which keeps 10^7-node graphs within a few GB of heap.
+ */
+public enum GraphFamily {
+    // n0 -> n1 -> ... -> n(size-1)
+    CHAIN {
+        @Override
+        String[][] edges(String[] labels) {
+            int size = labels.length;
+            String[][] edges = new String[Math.max(0, size - 1)][];
+            for (int i = 0; i + 1 < size; i++) {
+                edges[i] = new String[]{labels[i], labels[i + 1]};
+            }
+            return edges;
+        }
+    },
+    // Square grid with edges to the right and downward neighbour
+    GRID {
+        @Override
+        String[][] edges(String[] labels) {
+            int size = labels.length;
+            int side = (int) Math.sqrt(size);
+            List<String[]> edges = new ArrayList<>(2 * size);
+            for (int v = 0; v < size; v++) {
+                if ((v + 1) % side != 0 && v + 1 < size) {
+                    edges.add(new String[]{labels[v], labels[v + 1]});
+                }
+                if (v + side < size) {
+                    edges.add(new String[]{labels[v], labels[v + side]});
+                }
+            }
+            return edges.toArray(new String[0][]);
+        }
+    },
+    // Erdős–Rényi G(n, m) with m = DEGREE * n uniformly drawn edges
+    ERDOS_RENYI {
+        @Override
+        String[][] edges(String[] labels) {
+            int size = labels.length;
+            SplittableRandom random = new SplittableRandom(SEED);
+            String[][] edges = new String[size * DEGREE][];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = new String[]{labels[random.nextInt(size)], labels[random.nextInt(size)]};
+            }
+            return edges;
+        }
+    },
+    // Barabási–Albert preferential attachment, DEGREE edges from each new node
+    POWER_LAW {
+        @Override
+        String[][] edges(String[] labels) {
+            int size = labels.length;
+            SplittableRandom random = new SplittableRandom(SEED);
+            // Every edge endpoint once, so a uniform pick is proportional to degree
+            int[] endpoints = new int[2 * size * DEGREE];
+            int count = 0;
+            List<String[]> edges = new ArrayList<>(size * DEGREE);
+            for (int v = 1; v < size; v++) {
+                for (int k = 0; k < DEGREE; k++) {
+                    int target = count == 0 ? 0 : endpoints[random.nextInt(count)];
+                    edges.add(new String[]{labels[v], labels[target]});
+                    endpoints[count++] = v;
+                    endpoints[count++] = target;
+                }
+            }
+            return edges.toArray(new String[0][]);
+        }
+    };
+
+    static final int DEGREE = 4;
+    static final long SEED = 464;
+
+    abstract String[][] edges(String[] labels);
+
+    static String[] labels(int size) {
+        String[] labels = new String[size];
+        Arrays.setAll(labels, v -> "n" + v);
+        return labels;
+    }
+
+    // Query pairs drawn with a fixed seed
+    static String[][] queries(String[] labels, int count) {
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        String[][] queries = new String[count][];
+        Arrays.setAll(queries, i -> new String[]{labels[random.nextInt(labels.length)], labels[random.nextInt(labels.length)]});
+        return queries;
+    }
+}
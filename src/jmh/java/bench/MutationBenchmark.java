@@ -0,0 +1,73 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building a whole graph through the batch calls and through one call per node and edge
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmark {
+    @Param({"CHAIN", "GRID", "ERDOS_RENYI", "POWER_LAW"})
+    public GraphFamily family;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"DEFAULT", "COMPACT"})
+    public String storage;
+
+    private List<String> labels;
+    private String[][] edges;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Api.mute();
+        String[] labels = GraphFamily.labels(size);
+        this.labels = Arrays.asList(labels);
+        edges = family.edges(labels);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Api.unmute();
+    }
+
+    @Benchmark
+    public Object bulkInsert() throws Throwable {
+        Object graph = Api.newGraph(storage);
+        Api.addNodes(graph, labels);
+        Api.addEdges(graph, edges);
+        return graph;
+    }
+
+    @Benchmark
+    public Object singleInsert() throws Throwable {
+        Object graph = Api.newGraph(storage);
+        for (String label : labels) {
+            Api.addNode(graph, label);
+        }
+        for (String[] edge : edges) {
+            Api.addEdge(graph, edge[0], edge[1]);
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// One GraphSearch per invocation, cycling through fixed random source/destination pairs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int QUERIES = 64;
+
+    @Param({"CHAIN", "GRID", "ERDOS_RENYI", "POWER_LAW"})
+    public GraphFamily family;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"DEFAULT", "COMPACT"})
+    public String storage;
+
+    @Param({"BFS", "DFS", "RWS", "PBFS"})
+    public String algorithm;
+
+    private Object graph;
+    private Object algo;
+    private String[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Api.mute();
+        String[] labels = GraphFamily.labels(size);
+        graph = Api.newGraph(storage);
+        Api.addNodes(graph, Arrays.asList(labels));
+        Api.addEdges(graph, family.edges(labels));
+        algo = Api.algorithm(algorithm);
+        queries = GraphFamily.queries(labels, QUERIES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Api.unmute();
+    }
+
+    @Benchmark
+    public Object search() throws Throwable {
+        String[] query = queries[next];
+        next = (next + 1) % QUERIES;
+        return Api.search(graph, query[0], query[1], algo);
+    }
+}
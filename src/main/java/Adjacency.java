@@ -0,0 +1,27 @@
+/**
+ * Read-only int-id adjacency the searches in IntGraphSearch run on: a {@link CsrGraph} on the
+ * heap, or a snapshot file served in place by {@link GraphSnapshot.Mapped}. Edges are laid out
+ * CSR style, so v's out-edges sit at positions outOffset(v) up to outOffset(v + 1), and the
+ * same for in-edges.
+ */
+interface Adjacency {
+    // Size of the id space, including ids of removed vertices
+    int size();
+    String label(int v);
+    int outOffset(int v);
+    int outTarget(int p);
+    int inOffset(int v);
+    int inTarget(int p);
+    // Weight of the out-edge at position p
+    double weight(int p);
+    // False when every weight is 1
+    boolean isWeighted();
+
+    default int outDegree(int v) {
+        return outOffset(v + 1) - outOffset(v);
+    }
+
+    default int inDegree(int v) {
+        return inOffset(v + 1) - inOffset(v);
+    }
+}
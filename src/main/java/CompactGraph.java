@@ -0,0 +1,869 @@
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DefaultGraphType;
+import org.jgrapht.util.ArrayUnenforcedSet;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Memory-compact directed graph storage. Vertex labels are interned to int ids and
+ * adjacency lives in a {@link CsrGraph} (one int per edge in each direction). Mutations
+ * are collected in a small delta buffer of packed edge keys and folded into a fresh CSR
+ * once the buffer grows past a fraction of the graph, or whenever adjacency is read.
+ * Edge weights live in the CSR; weights set since the last compaction sit in the delta too.
+ * Removed vertices leave their id empty until a read finds more than half the id space
+ * empty; freeze then renumbers the live vertices, so churn cannot grow the id space forever.
+ * capture copies just the pending mutations, so the next CSR can be built off the writer's
+ * lock while edits continue.
+ */
+public class CompactGraph {
+    // Fold the delta into the CSR once it holds this share of the edges (and at least MIN_DELTA)
+    private static final int MIN_DELTA = 4096;
+    private static final int DELTA_SHIFT = 2;
+    // Renumber once this share of the ids (and at least MIN_DELTA) belong to removed vertices
+    private static final int HOLE_SHIFT = 1;
+
+    private String[] labels = new String[16];
+    private int[] outDegree = new int[16];
+    private int[] inDegree = new int[16];
+    private int size;
+    private int vertexCount;
+    private int edgeCount;
+    private LabelIndex index = new LabelIndex();
+    // Snapshots may share their index with the next snapshot; an edit takes a copy first
+    private boolean sharedIndex;
+    // A vertex was added or removed since the last compaction, so the CSR needs new labels
+    private boolean relabeled;
+    // Successful mutations so far, to tell whether a batch of them changed anything
+    private long modCount;
+
+    private CsrGraph base = CsrGraph.empty();
+    private LongHashSet added = new LongHashSet();
+    private LongHashSet removed = new LongHashSet();
+    // Weights that differ from the CSR's: changed CSR edges, and pending edges not weighted 1
+    private LongDoubleMap weights = new LongDoubleMap();
+    private View view;
+
+    public CompactGraph() {
+    }
+
+    // Storage that starts out as the given adjacency, e.g. one loaded from a snapshot
+    CompactGraph(CsrGraph csr) {
+        load(csr, null);
+    }
+
+    // Copy of csr for readers. If previous was taken from the very same labels array, i.e. no
+    // vertex was added or removed in between, its label index is reused instead of hashing
+    // every label again, which leaves O(V) of int copying on top of the CSR itself
+    static CompactGraph snapshot(CsrGraph csr, CompactGraph previous) {
+        CompactGraph snapshot = new CompactGraph();
+        snapshot.load(csr, previous != null && previous.base.labels == csr.labels ? previous.index : null);
+        snapshot.sharedIndex = true;
+        return snapshot;
+    }
+
+    // Replaces every vertex and edge with those of csr, which holds no pending mutations;
+    // index, if given, must already map csr's labels
+    private void load(CsrGraph csr, LabelIndex shared) {
+        int n = csr.size();
+        int capacity = Math.max(16, n);
+        labels = Arrays.copyOf(csr.labels, capacity);
+        outDegree = new int[capacity];
+        inDegree = new int[capacity];
+        index = shared != null ? shared : new LabelIndex();
+        for (int v = 0; v < n; v++) {
+            outDegree[v] = csr.outDegree(v);
+            inDegree[v] = csr.inDegree(v);
+            if (shared == null && labels[v] != null) {
+                index.put(labels[v], v);
+            }
+        }
+        size = n;
+        vertexCount = csr.vertexCount();
+        edgeCount = csr.edgeCount();
+        base = csr;
+        relabeled = false;
+    }
+
+    private LabelIndex ownIndex() {
+        if (sharedIndex) {
+            index = index.copy();
+            sharedIndex = false;
+        }
+        return index;
+    }
+
+    public int idOf(String label) {
+        return label == null ? -1 : index.get(label, labels);
+    }
+
+    public String labelOf(int id) {
+        return id >= 0 && id < size ? labels[id] : null;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    long modCount() {
+        return modCount;
+    }
+
+    public boolean containsVertex(String label) {
+        return idOf(label) >= 0;
+    }
+
+    public boolean addVertex(String label) {
+        if (label == null || index.get(label, labels) >= 0) {
+            return false;
+        }
+        add(label);
+        return true;
+    }
+
+    // Id of the label, adding the vertex first if it is new
+    public int intern(String label) {
+        int id = index.get(label, labels);
+        return id >= 0 ? id : add(label);
+    }
+
+    private int add(String label) {
+        if (size == labels.length) {
+            int capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            outDegree = Arrays.copyOf(outDegree, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+        }
+        labels[size] = label;
+        ownIndex().put(label, size);
+        relabeled = true;
+        modCount++;
+        vertexCount++;
+        return size++;
+    }
+
+    public boolean removeVertex(String label) {
+        int u = idOf(label);
+        if (u < 0) {
+            return false;
+        }
+        // Tombstone the vertex's edges still present in the CSR
+        if (u < base.size()) {
+            for (int p = base.outOffsets[u]; p < base.outOffsets[u + 1]; p++) {
+                dropBaseEdge(u, base.outTargets[p]);
+            }
+            for (int p = base.inOffsets[u]; p < base.inOffsets[u + 1]; p++) {
+                dropBaseEdge(base.inTargets[p], u);
+            }
+        }
+        // Drop pending edges that touch the vertex
+        if (!added.isEmpty()) {
+            long[] touching = new long[outDegree[u] + inDegree[u]];
+            int count = 0;
+            for (long key : added.table) {
+                if (key != LongHashSet.EMPTY && (LongHashSet.src(key) == u || LongHashSet.dst(key) == u)) {
+                    touching[count++] = key;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                added.remove(touching[i]);
+                weights.remove(touching[i]);
+                unlink(LongHashSet.src(touching[i]), LongHashSet.dst(touching[i]));
+            }
+        }
+        ownIndex().remove(label, labels);
+        labels[u] = null;
+        relabeled = true;
+        modCount++;
+        vertexCount--;
+        return true;
+    }
+
+    public boolean containsEdge(int u, int v) {
+        if (u < 0 || v < 0) {
+            return false;
+        }
+        long key = LongHashSet.key(u, v);
+        if (added.contains(key)) {
+            return true;
+        }
+        return base.findOut(u, v) >= 0 && !removed.contains(key);
+    }
+
+    public boolean addEdge(int u, int v) {
+        if (labelOf(u) == null || labelOf(v) == null || containsEdge(u, v)) {
+            return false;
+        }
+        long key = LongHashSet.key(u, v);
+        // Re-adding an edge that is still in the CSR just lifts its tombstone, with a fresh weight
+        if (removed.remove(key)) {
+            if (base.weight(base.findOut(u, v)) != Graph.DEFAULT_EDGE_WEIGHT) {
+                weights.put(key, Graph.DEFAULT_EDGE_WEIGHT);
+            }
+        } else {
+            added.add(key);
+        }
+        outDegree[u]++;
+        inDegree[v]++;
+        edgeCount++;
+        modCount++;
+        compactIfFull();
+        return true;
+    }
+
+    public boolean removeEdge(int u, int v) {
+        if (!containsEdge(u, v)) {
+            return false;
+        }
+        long key = LongHashSet.key(u, v);
+        if (!added.remove(key)) {
+            removed.add(key);
+        }
+        weights.remove(key);
+        unlink(u, v);
+        modCount++;
+        compactIfFull();
+        return true;
+    }
+
+    // Weight of edge u -> v, which must exist
+    public double weight(int u, int v) {
+        long key = LongHashSet.key(u, v);
+        double weight = weights.get(key, Double.NaN);
+        if (!Double.isNaN(weight)) {
+            return weight;
+        }
+        int p = base.findOut(u, v);
+        return p >= 0 ? base.weight(p) : Graph.DEFAULT_EDGE_WEIGHT;
+    }
+
+    public boolean setWeight(int u, int v, double weight) {
+        if (!containsEdge(u, v)) {
+            return false;
+        }
+        if (weight(u, v) == weight) {
+            return true;
+        }
+        weights.put(LongHashSet.key(u, v), weight);
+        modCount++;
+        compactIfFull();
+        return true;
+    }
+
+    private void dropBaseEdge(int u, int v) {
+        long key = LongHashSet.key(u, v);
+        if (removed.add(key)) {
+            weights.remove(key);
+            unlink(u, v);
+        }
+    }
+
+    private void unlink(int u, int v) {
+        outDegree[u]--;
+        inDegree[v]--;
+        edgeCount--;
+    }
+
+    private void compactIfFull() {
+        if (added.size() + removed.size() + weights.size() > Math.max(MIN_DELTA, edgeCount >>> DELTA_SHIFT)) {
+            compact();
+        }
+    }
+
+    // Current adjacency with every pending mutation applied. This may renumber the vertices,
+    // so ids taken before a call must be looked up again after it; mutations never renumber,
+    // which keeps ids valid across any run of them
+    public CsrGraph freeze() {
+        if (hasPending()) {
+            compact();
+        }
+        if (holey(size, vertexCount)) {
+            load(base.withoutHoles(), null);
+        }
+        return base;
+    }
+
+    // Copy of the pending mutations, from which Pending.build makes the adjacency freeze would
+    // return without touching this storage, so it can run while edits continue. Costs O(V)
+    // array copying plus the size of the delta
+    Pending capture() {
+        if (!hasPending()) {
+            return new Pending(this, base, base.labels, null, null, size, vertexCount, edgeCount, null, null, null);
+        }
+        return new Pending(this, base, relabeled ? Arrays.copyOf(labels, size) : base.labels,
+                Arrays.copyOf(outDegree, size), Arrays.copyOf(inDegree, size), size, vertexCount, edgeCount,
+                added.copy(), removed.copy(), weights.copy());
+    }
+
+    // Takes the adjacency of snapshot, built from pending, as this storage's own, so later
+    // captures start from it. Only valid if nothing was mutated since the capture
+    void adopt(Pending pending, CompactGraph snapshot) {
+        if (pending.owner != this || pending.base != base) {
+            return;
+        }
+        CsrGraph csr = snapshot.base;
+        if (csr.size() != size) {
+            // The build renumbered the vertices; the snapshot already indexes the new ids
+            load(csr, snapshot.index);
+            sharedIndex = true;
+            return;
+        }
+        base = csr;
+        relabeled = false;
+        added = new LongHashSet();
+        removed = new LongHashSet();
+        weights = new LongDoubleMap();
+    }
+
+    private boolean hasPending() {
+        return !added.isEmpty() || !removed.isEmpty() || !weights.isEmpty() || base.size() != size
+                || base.vertexCount() != vertexCount;
+    }
+
+    private static boolean holey(int size, int vertexCount) {
+        return size - vertexCount > Math.max(MIN_DELTA, size >>> HOLE_SHIFT);
+    }
+
+    private void compact() {
+        // Edge edits keep the labels array, which lets snapshots share their label index
+        String[] frozen = relabeled ? Arrays.copyOf(labels, size) : base.labels;
+        base = new Pending(this, base, frozen, outDegree, inDegree, size, vertexCount, edgeCount,
+                added, removed, weights).fold();
+        relabeled = false;
+        added = new LongHashSet();
+        removed = new LongHashSet();
+        weights = new LongDoubleMap();
+    }
+
+    /**
+     * Mutations pending on top of a CSR: compact folds the storage's own fields, capture
+     * folds copies of them. Null degree arrays mean there is nothing to fold.
+     */
+    static final class Pending {
+        private final CompactGraph owner;
+        private final CsrGraph base;
+        private final String[] labels;
+        private final int[] outDegree;
+        private final int[] inDegree;
+        private final int size;
+        private final int vertexCount;
+        private final int edgeCount;
+        private final LongHashSet added;
+        private final LongHashSet removed;
+        private final LongDoubleMap weights;
+
+        private Pending(CompactGraph owner, CsrGraph base, String[] labels, int[] outDegree, int[] inDegree,
+                        int size, int vertexCount, int edgeCount, LongHashSet added, LongHashSet removed,
+                        LongDoubleMap weights) {
+            this.owner = owner;
+            this.base = base;
+            this.labels = labels;
+            this.outDegree = outDegree;
+            this.inDegree = inDegree;
+            this.size = size;
+            this.vertexCount = vertexCount;
+            this.edgeCount = edgeCount;
+            this.added = added;
+            this.removed = removed;
+            this.weights = weights;
+        }
+
+        // Nothing pending on top of csr
+        static Pending of(CsrGraph csr) {
+            return new Pending(null, csr, csr.labels, null, null, csr.size(), csr.vertexCount(), csr.edgeCount(),
+                    null, null, null);
+        }
+
+        // The adjacency freeze would return, renumbered the same way if it has too many holes
+        CsrGraph build() {
+            CsrGraph csr = outDegree == null ? base : fold();
+            return holey(size, vertexCount) ? csr.withoutHoles() : csr;
+        }
+
+        private CsrGraph fold() {
+            int[] outOffsets = new int[size + 1];
+            int[] inOffsets = new int[size + 1];
+            for (int v = 0; v < size; v++) {
+                outOffsets[v + 1] = outOffsets[v] + outDegree[v];
+                inOffsets[v + 1] = inOffsets[v] + inDegree[v];
+            }
+            int[] outTargets = new int[edgeCount];
+            int[] inTargets = new int[edgeCount];
+            int[] outFill = Arrays.copyOf(outOffsets, size);
+            int[] inFill = Arrays.copyOf(inOffsets, size);
+            boolean filter = !removed.isEmpty();
+            for (int u = 0; u < base.size(); u++) {
+                for (int p = base.outOffsets[u]; p < base.outOffsets[u + 1]; p++) {
+                    int v = base.outTargets[p];
+                    if (filter && removed.contains(LongHashSet.key(u, v))) {
+                        continue;
+                    }
+                    outTargets[outFill[u]++] = v;
+                    inTargets[inFill[v]++] = u;
+                }
+            }
+            if (!added.isEmpty()) {
+                for (long key : added.table) {
+                    if (key != LongHashSet.EMPTY) {
+                        int u = LongHashSet.src(key);
+                        int v = LongHashSet.dst(key);
+                        outTargets[outFill[u]++] = v;
+                        inTargets[inFill[v]++] = u;
+                    }
+                }
+                // Base edges arrive in order, pending ones do not, so only rows they joined are sorted
+                boolean[] outSorted = new boolean[size];
+                boolean[] inSorted = new boolean[size];
+                for (long key : added.table) {
+                    if (key != LongHashSet.EMPTY) {
+                        int u = LongHashSet.src(key);
+                        int v = LongHashSet.dst(key);
+                        if (!outSorted[u]) {
+                            outSorted[u] = true;
+                            Arrays.sort(outTargets, outOffsets[u], outOffsets[u + 1]);
+                        }
+                        if (!inSorted[v]) {
+                            inSorted[v] = true;
+                            Arrays.sort(inTargets, inOffsets[v], inOffsets[v + 1]);
+                        }
+                    }
+                }
+            }
+            double[] outWeights = base.isWeighted() || !weights.isEmpty() ? weights(outOffsets, outTargets) : null;
+            return new CsrGraph(labels, outOffsets, outTargets, inOffsets, inTargets, outWeights, vertexCount);
+        }
+
+        // Weights for the new rows, looked up against the old CSR and the delta; null if all are 1
+        private double[] weights(int[] outOffsets, int[] outTargets) {
+            double[] outWeights = new double[outTargets.length];
+            boolean weighted = false;
+            for (int u = 0; u < size; u++) {
+                for (int p = outOffsets[u]; p < outOffsets[u + 1]; p++) {
+                    int v = outTargets[p];
+                    double weight = weights.get(LongHashSet.key(u, v), Double.NaN);
+                    if (Double.isNaN(weight)) {
+                        int q = base.findOut(u, v);
+                        weight = q >= 0 ? base.weight(q) : Graph.DEFAULT_EDGE_WEIGHT;
+                    }
+                    outWeights[p] = weight;
+                    weighted |= weight != Graph.DEFAULT_EDGE_WEIGHT;
+                }
+            }
+            return weighted ? outWeights : null;
+        }
+    }
+
+    // jgrapht view backed by this storage
+    public Graph<String, DefaultEdge> view() {
+        if (view == null) {
+            view = new View();
+        }
+        return view;
+    }
+
+    /**
+     * Edge handed out by the view. Edges are not stored, so two instances are equal when
+     * they connect the same vertex ids.
+     */
+    static final class CompactEdge extends DefaultEdge {
+        private static final long serialVersionUID = 1L;
+
+        final int src;
+        final int dst;
+        private final String srcLabel;
+        private final String dstLabel;
+
+        CompactEdge(int src, int dst, String srcLabel, String dstLabel) {
+            this.src = src;
+            this.dst = dst;
+            this.srcLabel = srcLabel;
+            this.dstLabel = dstLabel;
+        }
+
+        @Override
+        protected Object getSource() {
+            return srcLabel;
+        }
+
+        @Override
+        protected Object getTarget() {
+            return dstLabel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CompactEdge other && other.src == src && other.dst == dst;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(LongHashSet.key(src, dst));
+        }
+
+        @Override
+        public String toString() {
+            return "(" + srcLabel + " : " + dstLabel + ")";
+        }
+    }
+
+    private final class View extends AbstractGraph<String, DefaultEdge> {
+        private final GraphType type = new DefaultGraphType.Builder()
+                .directed().allowMultipleEdges(false).allowSelfLoops(true).weighted(true).build();
+
+        private CompactEdge edge(int u, int v) {
+            return new CompactEdge(u, v, labels[u], labels[v]);
+        }
+
+        private CompactEdge cast(Object e) {
+            return e instanceof CompactEdge ce ? ce : null;
+        }
+
+        @Override
+        public Set<DefaultEdge> getAllEdges(String sourceVertex, String targetVertex) {
+            DefaultEdge e = getEdge(sourceVertex, targetVertex);
+            return e == null ? Collections.emptySet() : Collections.singleton(e);
+        }
+
+        @Override
+        public DefaultEdge getEdge(String sourceVertex, String targetVertex) {
+            int u = idOf(sourceVertex);
+            int v = idOf(targetVertex);
+            return CompactGraph.this.containsEdge(u, v) ? edge(u, v) : null;
+        }
+
+        @Override
+        public Supplier<String> getVertexSupplier() {
+            return null;
+        }
+
+        @Override
+        public Supplier<DefaultEdge> getEdgeSupplier() {
+            return null;
+        }
+
+        @Override
+        public DefaultEdge addEdge(String sourceVertex, String targetVertex) {
+            int u = idOf(sourceVertex);
+            int v = idOf(targetVertex);
+            if (u < 0 || v < 0) {
+                assertVertexExist(u < 0 ? sourceVertex : targetVertex);
+            }
+            return CompactGraph.this.addEdge(u, v) ? edge(u, v) : null;
+        }
+
+        @Override
+        public boolean addEdge(String sourceVertex, String targetVertex, DefaultEdge e) {
+            return addEdge(sourceVertex, targetVertex) != null;
+        }
+
+        @Override
+        public String addVertex() {
+            throw new UnsupportedOperationException("Vertices need a label");
+        }
+
+        @Override
+        public boolean addVertex(String v) {
+            Objects.requireNonNull(v);
+            return CompactGraph.this.addVertex(v);
+        }
+
+        @Override
+        public boolean containsEdge(DefaultEdge e) {
+            CompactEdge ce = cast(e);
+            return ce != null && labelOf(ce.src) != null && CompactGraph.this.containsEdge(ce.src, ce.dst);
+        }
+
+        @Override
+        public boolean containsVertex(String v) {
+            return CompactGraph.this.containsVertex(v);
+        }
+
+        @Override
+        public Set<DefaultEdge> edgeSet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<DefaultEdge> iterator() {
+                    CsrGraph csr = freeze();
+                    return new Iterator<>() {
+                        private int u = 0;
+                        private int p = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (u < csr.size() && p >= csr.outOffsets[u + 1]) {
+                                u++;
+                            }
+                            return p < csr.outTargets.length;
+                        }
+
+                        @Override
+                        public DefaultEdge next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return edge(u, csr.outTargets[p++]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return edgeCount;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof DefaultEdge e && View.this.containsEdge(e);
+                }
+            };
+        }
+
+        // Edges of one CSR row, either vertex -> targets or sources -> vertex
+        private Set<DefaultEdge> row(String vertex, boolean outgoing, boolean skipLoops) {
+            // Freezing may renumber, so the id is only taken after it
+            CsrGraph csr = freeze();
+            int u = requireVertex(vertex);
+            int[] offsets = outgoing ? csr.outOffsets : csr.inOffsets;
+            int[] targets = outgoing ? csr.outTargets : csr.inTargets;
+            List<DefaultEdge> edges = new ArrayList<>(offsets[u + 1] - offsets[u]);
+            for (int p = offsets[u]; p < offsets[u + 1]; p++) {
+                int v = targets[p];
+                if (skipLoops && v == u) {
+                    continue;
+                }
+                edges.add(outgoing ? edge(u, v) : edge(v, u));
+            }
+            return new ArrayUnenforcedSet<>(edges);
+        }
+
+        private int requireVertex(String v) {
+            assertVertexExist(v);
+            return idOf(v);
+        }
+
+        @Override
+        public int degreeOf(String vertex) {
+            return inDegreeOf(vertex) + outDegreeOf(vertex);
+        }
+
+        @Override
+        public Set<DefaultEdge> edgesOf(String vertex) {
+            // Incoming first, then outgoing without self-loops, as DefaultDirectedGraph does
+            Set<DefaultEdge> edges = row(vertex, false, false);
+            edges.addAll(row(vertex, true, true));
+            return edges;
+        }
+
+        @Override
+        public int inDegreeOf(String vertex) {
+            return inDegree[requireVertex(vertex)];
+        }
+
+        @Override
+        public Set<DefaultEdge> incomingEdgesOf(String vertex) {
+            return row(vertex, false, false);
+        }
+
+        @Override
+        public int outDegreeOf(String vertex) {
+            return outDegree[requireVertex(vertex)];
+        }
+
+        @Override
+        public Set<DefaultEdge> outgoingEdgesOf(String vertex) {
+            return row(vertex, true, false);
+        }
+
+        @Override
+        public DefaultEdge removeEdge(String sourceVertex, String targetVertex) {
+            int u = idOf(sourceVertex);
+            int v = idOf(targetVertex);
+            return CompactGraph.this.removeEdge(u, v) ? edge(u, v) : null;
+        }
+
+        @Override
+        public boolean removeEdge(DefaultEdge e) {
+            CompactEdge ce = cast(e);
+            return ce != null && labelOf(ce.src) != null && CompactGraph.this.removeEdge(ce.src, ce.dst);
+        }
+
+        @Override
+        public boolean removeVertex(String v) {
+            return CompactGraph.this.removeVertex(v);
+        }
+
+        @Override
+        public Set<String> vertexSet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new Iterator<>() {
+                        private int u = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (u < size && labels[u] == null) {
+                                u++;
+                            }
+                            return u < size;
+                        }
+
+                        @Override
+                        public String next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return labels[u++];
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return vertexCount;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof String s && containsVertex(s);
+                }
+            };
+        }
+
+        @Override
+        public String getEdgeSource(DefaultEdge e) {
+            return (String) ((CompactEdge) e).getSource();
+        }
+
+        @Override
+        public String getEdgeTarget(DefaultEdge e) {
+            return (String) ((CompactEdge) e).getTarget();
+        }
+
+        @Override
+        public GraphType getType() {
+            return type;
+        }
+
+        @Override
+        public double getEdgeWeight(DefaultEdge e) {
+            CompactEdge ce = (CompactEdge) e;
+            return CompactGraph.this.weight(ce.src, ce.dst);
+        }
+
+        @Override
+        public void setEdgeWeight(DefaultEdge e, double weight) {
+            CompactEdge ce = cast(e);
+            if (ce == null || labelOf(ce.src) == null || !setWeight(ce.src, ce.dst, weight)) {
+                throw new IllegalArgumentException("no such edge in graph: " + e);
+            }
+        }
+    }
+
+    /**
+     * String to id hash table. Each slot packs the label's hash code with its id + 1, so a
+     * probe touches the label string only when the hash codes already match. Labels are
+     * stored by the owner and passed in for comparison.
+     */
+    static final class LabelIndex {
+        private long[] slots = new long[32];
+        private int shift = 27;
+        private int used;
+
+        LabelIndex copy() {
+            LabelIndex copy = new LabelIndex();
+            copy.slots = slots.clone();
+            copy.shift = shift;
+            copy.used = used;
+            return copy;
+        }
+
+        private int slot(int hash) {
+            return (hash * 0x9E3779B9) >>> shift;
+        }
+
+        private static long entry(int hash, int id) {
+            return ((long) hash << 32) | (id + 1L);
+        }
+
+        private static int idOf(long entry) {
+            return (int) entry - 1;
+        }
+
+        private static int hashOf(long entry) {
+            return (int) (entry >>> 32);
+        }
+
+        int get(String label, String[] labels) {
+            int hash = label.hashCode();
+            int mask = slots.length - 1;
+            int i = slot(hash);
+            long e;
+            while ((e = slots[i]) != 0) {
+                if (hashOf(e) == hash && label.equals(labels[idOf(e)])) {
+                    return idOf(e);
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(String label, int id) {
+            if ((used + 1) * 2 > slots.length) {
+                long[] old = slots;
+                slots = new long[old.length * 2];
+                shift--;
+                for (long e : old) {
+                    if (e != 0) {
+                        insert(e);
+                    }
+                }
+            }
+            insert(entry(label.hashCode(), id));
+            used++;
+        }
+
+        private void insert(long e) {
+            int mask = slots.length - 1;
+            int i = slot(hashOf(e));
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = e;
+        }
+
+        void remove(String label, String[] labels) {
+            int hash = label.hashCode();
+            int mask = slots.length - 1;
+            int hole = slot(hash);
+            while (slots[hole] != 0 && !(hashOf(slots[hole]) == hash && label.equals(labels[idOf(slots[hole])]))) {
+                hole = (hole + 1) & mask;
+            }
+            if (slots[hole] == 0) {
+                return;
+            }
+            used--;
+            // Backward-shift the rest of the cluster over the hole
+            int i = hole;
+            while (true) {
+                i = (i + 1) & mask;
+                if (slots[i] == 0) {
+                    break;
+                }
+                int home = slot(hashOf(slots[i]));
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    slots[hole] = slots[i];
+                    hole = i;
+                }
+            }
+            slots[hole] = 0;
+        }
+    }
+}
@@ -13,4 +13,21 @@ public class Context {
         strategy.executeAlgorithm();
         return strategy.getPath();
     }
-}
\ No newline at end of file
+
+    // Same search, timed and reported to the listener; without one it costs nothing extra
+    Path searchByStrategy(GraphData.Algorithm algo, String src, String dst, SearchListener listener) {
+        if (listener == null) {
+            return searchByStrategy();
+        }
+        long allocatedBefore = SearchMetrics.threadAllocatedBytes();
+        long start = System.nanoTime();
+        Path path = searchByStrategy();
+        long nanos = System.nanoTime() - start;
+        long allocatedAfter = SearchMetrics.threadAllocatedBytes();
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        listener.onSearch(new SearchMetrics(algo, src, dst, path != null, strategy.nodesExpanded(),
+                strategy.edgesScanned(), strategy.peakFrontier(), strategy.bytesRead(), strategy.bytesWritten(),
+                nanos, allocated));
+        return path;
+    }
+}
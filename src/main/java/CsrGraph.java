@@ -0,0 +1,219 @@
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable compressed-sparse-row adjacency over int vertex ids.
+ * Targets of every vertex are kept sorted so edge lookups are a binary search.
+ * Ids of removed vertices stay in the id space with a null label.
+ * Edge weights run parallel to outTargets, or are null when every weight is 1.
+ */
+public final class CsrGraph implements Adjacency {
+    final String[] labels;
+    final int[] outOffsets;
+    final int[] outTargets;
+    final int[] inOffsets;
+    final int[] inTargets;
+    final double[] outWeights;
+    final int vertexCount;
+
+    CsrGraph(String[] labels, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inTargets,
+             double[] outWeights, int vertexCount) {
+        this.labels = labels;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+        this.outWeights = outWeights;
+        this.vertexCount = vertexCount;
+    }
+
+    static CsrGraph empty() {
+        return new CsrGraph(new String[0], new int[1], new int[0], new int[1], new int[0], null, 0);
+    }
+
+    // Build the adjacency of a jgrapht graph, numbering vertices in vertexSet() order
+    static CsrGraph of(Graph<String, DefaultEdge> graph) {
+        int n = graph.vertexSet().size();
+        String[] labels = new String[n];
+        Map<String, Integer> ids = new HashMap<>(n * 2);
+        for (String v : graph.vertexSet()) {
+            labels[ids.size()] = v;
+            ids.put(v, ids.size());
+        }
+        int m = graph.edgeSet().size();
+        int[] src = new int[m];
+        int[] dst = new int[m];
+        double[] weights = null;
+        int i = 0;
+        for (DefaultEdge e : graph.edgeSet()) {
+            src[i] = ids.get(graph.getEdgeSource(e));
+            dst[i] = ids.get(graph.getEdgeTarget(e));
+            double weight = graph.getEdgeWeight(e);
+            if (weight != Graph.DEFAULT_EDGE_WEIGHT && weights == null) {
+                weights = new double[m];
+                Arrays.fill(weights, Graph.DEFAULT_EDGE_WEIGHT);
+            }
+            if (weights != null) {
+                weights[i] = weight;
+            }
+            i++;
+        }
+        return build(labels, n, src, dst, weights, m);
+    }
+
+    // Build both directions from an edge list; labels[0..size) are taken as is and weights may be null
+    static CsrGraph build(String[] labels, int size, int[] src, int[] dst, double[] weights, int edgeCount) {
+        int[] outOffsets = new int[size + 1];
+        int[] inOffsets = new int[size + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            outOffsets[src[i] + 1]++;
+            inOffsets[dst[i] + 1]++;
+        }
+        for (int v = 0; v < size; v++) {
+            outOffsets[v + 1] += outOffsets[v];
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] outTargets = new int[edgeCount];
+        int[] inTargets = new int[edgeCount];
+        double[] outWeights = weights == null ? null : new double[edgeCount];
+        int[] outFill = Arrays.copyOf(outOffsets, size);
+        int[] inFill = Arrays.copyOf(inOffsets, size);
+        for (int i = 0; i < edgeCount; i++) {
+            if (outWeights != null) {
+                outWeights[outFill[src[i]]] = weights[i];
+            }
+            outTargets[outFill[src[i]]++] = dst[i];
+            inTargets[inFill[dst[i]]++] = src[i];
+        }
+        long[] order = new long[0];
+        for (int v = 0; v < size; v++) {
+            int from = outOffsets[v];
+            int to = outOffsets[v + 1];
+            if (outWeights == null) {
+                Arrays.sort(outTargets, from, to);
+            } else {
+                // Sort (target, slot) pairs so each weight follows its target
+                if (order.length < to - from) {
+                    order = new long[to - from];
+                }
+                for (int p = from; p < to; p++) {
+                    order[p - from] = ((long) outTargets[p] << 32) | (p - from);
+                }
+                Arrays.sort(order, 0, to - from);
+                double[] row = Arrays.copyOfRange(outWeights, from, to);
+                for (int p = from; p < to; p++) {
+                    outTargets[p] = (int) (order[p - from] >>> 32);
+                    outWeights[p] = row[(int) order[p - from]];
+                }
+            }
+            Arrays.sort(inTargets, inOffsets[v], inOffsets[v + 1]);
+        }
+        int vertexCount = 0;
+        for (int v = 0; v < size; v++) {
+            if (labels[v] != null) {
+                vertexCount++;
+            }
+        }
+        return new CsrGraph(Arrays.copyOf(labels, size), outOffsets, outTargets, inOffsets, inTargets, outWeights, vertexCount);
+    }
+
+    // Same graph with the ids of removed vertices squeezed out
+    CsrGraph withoutHoles() {
+        if (vertexCount == labels.length) {
+            return this;
+        }
+        int[] remap = new int[labels.length];
+        String[] live = new String[vertexCount];
+        int next = 0;
+        for (int v = 0; v < labels.length; v++) {
+            remap[v] = labels[v] == null ? -1 : next;
+            if (labels[v] != null) {
+                live[next++] = labels[v];
+            }
+        }
+        int m = outTargets.length;
+        int[] src = new int[m];
+        int[] dst = new int[m];
+        int i = 0;
+        for (int u = 0; u < labels.length; u++) {
+            for (int p = outOffsets[u]; p < outOffsets[u + 1]; p++) {
+                src[i] = remap[u];
+                dst[i] = remap[outTargets[p]];
+                i++;
+            }
+        }
+        // Edges are listed in CSR order, so the weights line up as they are
+        return build(live, vertexCount, src, dst, outWeights, m);
+    }
+
+    // Size of the id space, including ids of removed vertices
+    public int size() {
+        return labels.length;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    public boolean isLive(int v) {
+        return v >= 0 && v < labels.length && labels[v] != null;
+    }
+
+    public String label(int v) {
+        return labels[v];
+    }
+
+    public int outDegree(int v) {
+        return outOffsets[v + 1] - outOffsets[v];
+    }
+
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    public int outOffset(int v) {
+        return outOffsets[v];
+    }
+
+    public int outTarget(int p) {
+        return outTargets[p];
+    }
+
+    public int inOffset(int v) {
+        return inOffsets[v];
+    }
+
+    public int inTarget(int p) {
+        return inTargets[p];
+    }
+
+    // Position of edge u -> v in outTargets, or -1
+    int findOut(int u, int v) {
+        if (u < 0 || u >= labels.length) {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(outTargets, outOffsets[u], outOffsets[u + 1], v);
+        return pos >= 0 ? pos : -1;
+    }
+
+    public boolean hasEdge(int u, int v) {
+        return findOut(u, v) >= 0;
+    }
+
+    public boolean isWeighted() {
+        return outWeights != null;
+    }
+
+    // Weight of the edge stored at position p of outTargets
+    public double weight(int p) {
+        return outWeights == null ? Graph.DEFAULT_EDGE_WEIGHT : outWeights[p];
+    }
+}
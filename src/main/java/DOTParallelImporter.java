@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tokenizes a DOT file's statement list on several threads. The body is cut into byte ranges
+ * right after a ";\n", without a sequential pre-scan. A cut that lands inside a string,
+ * comment, attribute list or subgraph makes the range before it fail to parse, in which case
+ * {@link #tokenize} returns null and the caller reads the file sequentially instead. Replaying
+ * the batches in range order reproduces the sequential parser's event order exactly.
+ */
+final class DOTParallelImporter {
+    private static final long MIN_CHUNK = 1 << 16;
+    // Ranges are memory-mapped, so each has to stay well below 2 GB
+    private static final long MAX_CHUNK = 1 << 30;
+    private static final int CUT_WINDOW = 1 << 20;
+
+    private DOTParallelImporter() {
+    }
+
+    // Batches in file order, or null when the file should be read sequentially
+    static List<Batch> tokenize(String filepath, int threads) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            DOTStreamParser header = new DOTStreamParser(channel, size, null);
+            header.nextToken();
+            header.parseHeader();
+            long start = header.bodyOffset();
+            long body = size - start;
+            long chunks = Math.max(Math.min(threads, body / MIN_CHUNK), (body + MAX_CHUNK - 1) / MAX_CHUNK);
+            if (chunks < 2) {
+                return null;
+            }
+
+            List<Long> cuts = new ArrayList<>();
+            cuts.add(start);
+            for (long i = 1; i < chunks; i++) {
+                long cut = findCut(channel, start + body * i / chunks, size);
+                if (cut > cuts.get(cuts.size() - 1) && cut < size) {
+                    cuts.add(cut);
+                }
+            }
+            cuts.add(size);
+            if (cuts.size() < 3) {
+                return null;
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+            try {
+                List<Future<Batch>> futures = new ArrayList<>();
+                for (int k = 0; k + 1 < cuts.size(); k++) {
+                    long from = cuts.get(k);
+                    long to = cuts.get(k + 1);
+                    boolean last = k + 2 == cuts.size();
+                    futures.add(pool.submit(() -> tokenizeRange(channel, from, to, last)));
+                }
+                List<Batch> batches = new ArrayList<>(futures.size());
+                for (Future<Batch> future : futures) {
+                    Batch batch = future.get();
+                    if (batch == null) {
+                        return null;
+                    }
+                    batches.add(batch);
+                }
+                return batches;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while importing " + filepath, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Cannot tokenize " + filepath, e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // Offset just past the first ";\n" at or after target, or -1 if the window has none
+    private static long findCut(FileChannel channel, long target, long size) throws IOException {
+        int length = (int) Math.min(CUT_WINDOW, size - target);
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, target, length);
+        for (int i = 0; i + 1 < length; i++) {
+            if (window.get(i) == ';') {
+                byte next = window.get(i + 1);
+                if (next == '\n' || (next == '\r' && i + 2 < length && window.get(i + 2) == '\n')) {
+                    return target + i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // A range parses cleanly if it ends between statements, and only the last one closes the graph
+    private static Batch tokenizeRange(FileChannel channel, long from, long to, boolean last) throws IOException {
+        ByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Batch batch = new Batch();
+        DOTStreamParser parser = new DOTStreamParser(range, batch);
+        try {
+            boolean closed = parser.statementsToEnd();
+            // Defaults set here would apply to the ranges after it, which never saw them
+            if (closed != last || (!last && parser.setTopLevelDefaults())) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * Events of one range with labels interned to range-local ids. Vertex events are stored as
+     * -(id + 1) and edge events as a (source, target) pair of ids.
+     */
+    static final class Batch implements DOTStreamParser.Handler {
+        private final CompactGraph.LabelIndex ids = new CompactGraph.LabelIndex();
+        private String[] labels = new String[64];
+        private int labelCount;
+        private int[] events = new int[256];
+        private int eventCount;
+        private final List<Map<String, String>> edgeAttributes = new ArrayList<>();
+
+        private int id(String label) {
+            int id = ids.get(label, labels);
+            if (id < 0) {
+                id = labelCount++;
+                if (id == labels.length) {
+                    labels = Arrays.copyOf(labels, id * 2);
+                }
+                labels[id] = label;
+                ids.put(label, id);
+            }
+            return id;
+        }
+
+        private void push(int value) {
+            if (eventCount == events.length) {
+                events = Arrays.copyOf(events, eventCount * 2);
+            }
+            events[eventCount++] = value;
+        }
+
+        @Override
+        public void vertex(String id, Map<String, String> attributes) {
+            push(-(id(id) + 1));
+        }
+
+        @Override
+        public void edge(String source, String target, Map<String, String> attributes) {
+            push(id(source));
+            push(id(target));
+            edgeAttributes.add(attributes);
+        }
+
+        void replay(DOTStreamParser.Handler handler) {
+            int edge = 0;
+            for (int i = 0; i < eventCount; i++) {
+                int event = events[i];
+                if (event < 0) {
+                    handler.vertex(labels[-event - 1], Collections.emptyMap());
+                } else {
+                    handler.edge(labels[event], labels[events[++i]], edgeAttributes.get(edge++));
+                }
+            }
+        }
+
+        // Same as replaying through the graph's handler, but each label is resolved once per range
+        void replay(CompactGraph graph) {
+            int[] global = new int[labelCount];
+            Arrays.fill(global, -1);
+            int edge = 0;
+            for (int i = 0; i < eventCount; i++) {
+                int event = events[i];
+                if (event < 0) {
+                    resolve(graph, global, -event - 1);
+                } else {
+                    int u = resolve(graph, global, event);
+                    int v = resolve(graph, global, events[++i]);
+                    String weight = edgeAttributes.get(edge++).get(GraphData.WEIGHT);
+                    if (graph.addEdge(u, v) && weight != null) {
+                        graph.setWeight(u, v, GraphData.parseWeight(weight));
+                    }
+                }
+            }
+        }
+
+        private int resolve(CompactGraph graph, int[] global, int local) {
+            if (global[local] < 0) {
+                global[local] = graph.intern(labels[local]);
+            }
+            return global[local];
+        }
+    }
+}
@@ -0,0 +1,568 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Incremental DOT reader. Bytes are pulled through a fixed-size buffer and every node and
+ * edge is handed to a {@link Handler} as soon as its statement is read, so memory use does
+ * not depend on the file size. Supports (strict) digraph files with attribute lists, quoted
+ * and HTML ids, ports, subgraphs, edge chains and comments. Undirected graph files are
+ * rejected, since the graph stores every edge in one direction only.
+ */
+public class DOTStreamParser {
+    interface Handler {
+        void vertex(String id, Map<String, String> attributes);
+        void edge(String source, String target, Map<String, String> attributes);
+    }
+
+    interface ProgressListener {
+        void progress(long bytesRead, long totalBytes);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final int EOF = 0;
+    private static final int ID = 1;
+    private static final int LBRACE = 2;
+    private static final int RBRACE = 3;
+    private static final int LBRACKET = 4;
+    private static final int RBRACKET = 5;
+    private static final int SEMI = 6;
+    private static final int COMMA = 7;
+    private static final int EQ = 8;
+    private static final int COLON = 9;
+    private static final int EDGEOP = 10;
+
+    private final Handler handler;
+    private final ReadableByteChannel channel;
+    private final ByteBuffer source;
+    private final long totalBytes;
+    private ProgressListener listener;
+
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed;
+    private int line = 1;
+    private byte[] scratch = new byte[256];
+
+    // Current token
+    private int token;
+    private String text;
+    private boolean quoted;
+
+    private boolean strict;
+    private long bodyOffset;
+    private boolean topLevelDefaults;
+    private Map<String, String> nodeDefaults = Collections.emptyMap();
+    private Map<String, String> edgeDefaults = Collections.emptyMap();
+
+    // Operands of the edge chain being read; a String or a List<String> from a subgraph
+    private Object[] chain = new Object[4];
+
+    DOTStreamParser(ReadableByteChannel channel, long totalBytes, Handler handler) {
+        this.channel = channel;
+        this.source = null;
+        this.totalBytes = totalBytes;
+        this.handler = handler;
+    }
+
+    DOTStreamParser(ByteBuffer source, Handler handler) {
+        this.channel = null;
+        this.source = source;
+        this.totalBytes = source.remaining();
+        this.handler = handler;
+    }
+
+    static void parse(String filepath, Handler handler, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            DOTStreamParser parser = new DOTStreamParser(channel, channel.size(), handler);
+            parser.setProgressListener(listener);
+            parser.parseGraph();
+        }
+    }
+
+    // Reads only the header, to reject a file that parse would reject before importing any of it
+    static void checkHeader(String filepath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            DOTStreamParser parser = new DOTStreamParser(channel, channel.size(), null);
+            parser.nextToken();
+            parser.parseHeader();
+        }
+    }
+
+    void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    boolean isStrict() {
+        return strict;
+    }
+
+    // Byte offset just past the opening brace of the statement list
+    long bodyOffset() {
+        return bodyOffset;
+    }
+
+    // Whether a node/edge default was set outside any subgraph
+    boolean setTopLevelDefaults() {
+        return topLevelDefaults;
+    }
+
+    // graph : [strict] (graph | digraph) [ID] '{' stmt_list '}'
+    void parseGraph() throws IOException {
+        nextToken();
+        parseHeader();
+        statements(null);
+        nextToken();
+    }
+
+    void parseHeader() throws IOException {
+        if (isKeyword("strict")) {
+            strict = true;
+            nextToken();
+        }
+        if (isKeyword("graph")) {
+            throw new IOException("Undirected graphs are not supported, the graph is directed");
+        } else if (!isKeyword("digraph")) {
+            throw error("Expected graph or digraph");
+        }
+        nextToken();
+        if (token == ID) {
+            nextToken();
+        }
+        expect(LBRACE);
+        bodyOffset = consumed + pos;
+        nextToken();
+    }
+
+    // Statements up to the closing brace; node ids mentioned are collected into members if given
+    void statements(List<String> members) throws IOException {
+        while (token != RBRACE) {
+            if (token == EOF) {
+                throw error("Unexpected end of file");
+            }
+            statement(members);
+            if (token == SEMI || token == COMMA) {
+                nextToken();
+            }
+        }
+    }
+
+    // Statements of a range cut out of a statement list; true if it ends at the closing brace
+    boolean statementsToEnd() throws IOException {
+        nextToken();
+        while (token != EOF && token != RBRACE) {
+            statement(null);
+            if (token == SEMI || token == COMMA) {
+                nextToken();
+            }
+        }
+        return token == RBRACE;
+    }
+
+    private void statement(List<String> members) throws IOException {
+        if (token == ID && !quoted) {
+            if (text.equalsIgnoreCase("graph")) {
+                nextToken();
+                attributes(Collections.emptyMap());
+                return;
+            } else if (text.equalsIgnoreCase("node")) {
+                nextToken();
+                nodeDefaults = attributes(nodeDefaults);
+                topLevelDefaults |= members == null;
+                return;
+            } else if (text.equalsIgnoreCase("edge")) {
+                nextToken();
+                edgeDefaults = attributes(edgeDefaults);
+                topLevelDefaults |= members == null;
+                return;
+            }
+        }
+
+        Object first = operand();
+        if (first == null) {
+            // ID '=' ID graph attribute
+            return;
+        }
+        if (token != EDGEOP) {
+            if (first instanceof String id) {
+                handler.vertex(id, token == LBRACKET ? attributes(nodeDefaults) : nodeDefaults);
+                if (members != null) {
+                    members.add(id);
+                }
+            }
+            else if (members != null) {
+                members.addAll(asList(first));
+            }
+            return;
+        }
+
+        int count = 0;
+        chain[count++] = first;
+        while (token == EDGEOP) {
+            nextToken();
+            Object next = operand();
+            if (next == null) {
+                throw error("Expected node or subgraph after edge operator");
+            }
+            if (count == chain.length) {
+                chain = Arrays.copyOf(chain, count * 2);
+            }
+            chain[count++] = next;
+        }
+        Map<String, String> attrs = token == LBRACKET ? attributes(edgeDefaults) : edgeDefaults;
+        for (int i = 0; i + 1 < count; i++) {
+            Object from = chain[i];
+            Object to = chain[i + 1];
+            if (from instanceof String s && to instanceof String t) {
+                handler.edge(s, t, attrs);
+            } else {
+                for (String s : asList(from)) {
+                    for (String t : asList(to)) {
+                        handler.edge(s, t, attrs);
+                    }
+                }
+            }
+        }
+        if (members != null) {
+            for (int i = 0; i < count; i++) {
+                members.addAll(asList(chain[i]));
+            }
+        }
+        Arrays.fill(chain, 0, count, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> asList(Object operand) {
+        return operand instanceof String s ? List.of(s) : (List<String>) operand;
+    }
+
+    // A node id (ports dropped) or a subgraph's members; null for an ID '=' ID statement
+    private Object operand() throws IOException {
+        if (token == LBRACE || isKeyword("subgraph")) {
+            return subgraph();
+        }
+        expect(ID);
+        String id = text;
+        nextToken();
+        if (token == EQ) {
+            nextToken();
+            expect(ID);
+            nextToken();
+            return null;
+        }
+        while (token == COLON) {
+            nextToken();
+            expect(ID);
+            nextToken();
+        }
+        return id;
+    }
+
+    private List<String> subgraph() throws IOException {
+        if (isKeyword("subgraph")) {
+            nextToken();
+            if (token == ID) {
+                nextToken();
+            }
+        }
+        expect(LBRACE);
+        nextToken();
+        // Defaults set inside a subgraph do not leak out of it
+        Map<String, String> savedNodeDefaults = nodeDefaults;
+        Map<String, String> savedEdgeDefaults = edgeDefaults;
+        List<String> members = new ArrayList<>();
+        statements(members);
+        nextToken();
+        nodeDefaults = savedNodeDefaults;
+        edgeDefaults = savedEdgeDefaults;
+        return members;
+    }
+
+    // One or more '[' a=b, ... ']' lists layered over the given defaults
+    private Map<String, String> attributes(Map<String, String> defaults) throws IOException {
+        Map<String, String> attrs = new HashMap<>(defaults);
+        while (token == LBRACKET) {
+            nextToken();
+            while (token != RBRACKET) {
+                expect(ID);
+                String key = text;
+                nextToken();
+                String value = "true";
+                if (token == EQ) {
+                    nextToken();
+                    expect(ID);
+                    value = text;
+                    nextToken();
+                }
+                attrs.put(key, value);
+                if (token == COMMA || token == SEMI) {
+                    nextToken();
+                }
+            }
+            nextToken();
+        }
+        return attrs.isEmpty() ? Collections.emptyMap() : attrs;
+    }
+
+    private boolean isKeyword(String keyword) {
+        return token == ID && !quoted && text.equalsIgnoreCase(keyword);
+    }
+
+    private void expect(int kind) throws IOException {
+        if (token != kind) {
+            throw error(token == EOF ? "Unexpected end of file" : "Unexpected token " + describe());
+        }
+    }
+
+    private String describe() {
+        return token == ID ? "'" + text + "'" : "'" + (char) buf[Math.max(0, pos - 1)] + "'";
+    }
+
+    private IOException error(String message) {
+        return new IOException("DOT syntax error at line " + line + ": " + message);
+    }
+
+    // Move the unread bytes to the front and read more; false at end of input
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            consumed += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n;
+        if (channel != null) {
+            n = channel.read(ByteBuffer.wrap(buf, limit, buf.length - limit));
+        } else {
+            n = Math.min(buf.length - limit, source.remaining());
+            source.get(buf, limit, n);
+        }
+        if (n <= 0) {
+            return false;
+        }
+        limit += n;
+        if (listener != null) {
+            listener.progress(consumed + limit, totalBytes);
+        }
+        return true;
+    }
+
+    private int peek(int ahead) throws IOException {
+        while (pos + ahead >= limit) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        return buf[pos + ahead] & 0xff;
+    }
+
+    // Bytes that may continue an unquoted id or numeral
+    private static final boolean[] WORD = new boolean[256];
+    static {
+        for (int c = 0; c < 256; c++) {
+            WORD[c] = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '.' || c >= 0x80;
+        }
+    }
+
+    int nextToken() throws IOException {
+        quoted = false;
+        while (true) {
+            int c = peek(0);
+            switch (c) {
+                case -1:
+                    return token = EOF;
+                case '\n':
+                    line++;
+                    pos++;
+                    continue;
+                case ' ': case '\t': case '\r': case '\f':
+                    pos++;
+                    continue;
+                case '#':
+                    skipLine();
+                    continue;
+                case '/':
+                    if (peek(1) == '/') {
+                        skipLine();
+                        continue;
+                    } else if (peek(1) == '*') {
+                        skipBlockComment();
+                        continue;
+                    }
+                    throw error("Unexpected character '/'");
+                case '{': pos++; return token = LBRACE;
+                case '}': pos++; return token = RBRACE;
+                case '[': pos++; return token = LBRACKET;
+                case ']': pos++; return token = RBRACKET;
+                case ';': pos++; return token = SEMI;
+                case ',': pos++; return token = COMMA;
+                case '=': pos++; return token = EQ;
+                case ':': pos++; return token = COLON;
+                case '"':
+                    readQuoted();
+                    return token = ID;
+                case '<':
+                    readHtml();
+                    return token = ID;
+                case '-':
+                    int next = peek(1);
+                    if (next == '>' || next == '-') {
+                        pos += 2;
+                        return token = EDGEOP;
+                    }
+                    readWord();
+                    return token = ID;
+                default:
+                    if (WORD[c]) {
+                        readWord();
+                        return token = ID;
+                    }
+                    pos++;
+                    throw error("Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = peek(0)) != -1 && c != '\n') {
+            pos++;
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        pos += 2;
+        while (true) {
+            int c = peek(0);
+            if (c == -1) {
+                throw error("Unterminated comment");
+            }
+            if (c == '*' && peek(1) == '/') {
+                pos += 2;
+                return;
+            }
+            if (c == '\n') {
+                line++;
+            }
+            pos++;
+        }
+    }
+
+    // Plain ids and numerals; a leading '-' belongs to a numeral
+    private void readWord() throws IOException {
+        int i = pos + 1;
+        while (true) {
+            if (i == limit) {
+                int length = i - pos;
+                boolean more = fill();
+                i = pos + length;
+                if (!more) {
+                    break;
+                }
+            }
+            if (!WORD[buf[i] & 0xff]) {
+                break;
+            }
+            i++;
+        }
+        text = new String(buf, pos, i - pos, StandardCharsets.UTF_8);
+        pos = i;
+    }
+
+    private void append(int length, int c) {
+        if (length == scratch.length) {
+            scratch = Arrays.copyOf(scratch, length * 2);
+        }
+        scratch[length] = (byte) c;
+    }
+
+    // "..." with \" escapes and line continuations, joined across '+'
+    private void readQuoted() throws IOException {
+        int length = 0;
+        while (true) {
+            pos++;
+            while (true) {
+                int c = peek(0);
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                pos++;
+                if (c == '"') {
+                    break;
+                }
+                if (c == '\\') {
+                    int escaped = peek(0);
+                    if (escaped == '"') {
+                        pos++;
+                        c = '"';
+                    } else if (escaped == '\n') {
+                        pos++;
+                        line++;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                append(length++, c);
+            }
+            int ahead = 0;
+            int c;
+            while ((c = peek(ahead)) == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                ahead++;
+            }
+            if (c != '+') {
+                break;
+            }
+            int after = ahead + 1;
+            while ((c = peek(after)) == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                after++;
+            }
+            if (c != '"') {
+                break;
+            }
+            for (int i = 0; i < after; i++) {
+                if (buf[pos + i] == '\n') {
+                    line++;
+                }
+            }
+            pos += after;
+        }
+        text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        quoted = true;
+    }
+
+    // <...> with nested angle brackets; the outer pair is dropped
+    private void readHtml() throws IOException {
+        int length = 0;
+        int depth = 1;
+        pos++;
+        while (true) {
+            int c = peek(0);
+            if (c == -1) {
+                throw error("Unterminated HTML string");
+            }
+            pos++;
+            if (c == '<') {
+                depth++;
+            } else if (c == '>' && --depth == 0) {
+                break;
+            } else if (c == '\n') {
+                line++;
+            }
+            append(length++, c);
+        }
+        text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        quoted = true;
+    }
+}
@@ -0,0 +1,516 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BFS over a snapshot file on disk instead of a graph in the heap, after Munagala and Ranade.
+ * The search runs level by level, and every set it keeps (a level in discovery order, a level
+ * by id, the neighbours of a level) is a stream of longs, sorted in memory while it fits the
+ * budget and otherwise spilled as sorted runs and merged. Adjacency is read through
+ * {@link GraphSnapshot.OnDisk} for the frontier in id order, so the file is swept front to
+ * back once per level.
+ * <p>
+ * Neighbours are taken in both edge directions like {@link IntBFS}, so the new nodes of a level
+ * are its neighbours minus the current and previous levels, and no visited set over the whole
+ * graph is needed. Each new node keeps the parent IntBFS would give it: the earliest node of the
+ * previous level reaching it, and for one parent in-edges before out-edges, by id; so both find
+ * the same path.
+ */
+final class ExternalBFS implements SearchStrategy {
+    // Runs merged at once; more are merged in several passes
+    private static final int MAX_FAN_IN = 64;
+    private static final int IO_BUFFER = 1 << 15;
+    private static final int MIN_BUFFER = 1 << 12;
+
+    private final String snapshotPath;
+    private final String sourceLabel;
+    private final String destinationLabel;
+    // Longs held by one sorter; at most two fill or drain at the same time
+    private final int runCapacity;
+    private GraphSnapshot.OnDisk disk;
+    private File workDir;
+    private int files;
+    private Path path;
+
+    // Work and I/O counters
+    private long expanded;
+    private long scanned;
+    private int peakFrontier;
+    private long spillRead;
+    private long spillWritten;
+
+    ExternalBFS(String snapshotPath, String src, String dst, long memoryBudget) {
+        this.snapshotPath = snapshotPath;
+        sourceLabel = src;
+        destinationLabel = dst;
+        runCapacity = (int) Math.max(MIN_BUFFER, Math.min(Integer.MAX_VALUE - 8, memoryBudget / 16));
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        try {
+            disk = GraphSnapshot.OnDisk.open(snapshotPath);
+            File parent = new File(snapshotPath).getAbsoluteFile().getParentFile();
+            workDir = Files.createTempDirectory(parent.toPath(), "bfs").toFile();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        try {
+            search();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    public long nodesExpanded() {
+        return expanded;
+    }
+
+    public long edgesScanned() {
+        return scanned;
+    }
+
+    public int peakFrontier() {
+        return peakFrontier;
+    }
+
+    // Bytes read from the snapshot file plus those read back from spilled runs and level files
+    public long bytesRead() {
+        return (disk == null ? 0 : disk.bytesRead()) + spillRead;
+    }
+
+    // Bytes written to spilled runs and level files
+    public long bytesWritten() {
+        return spillWritten;
+    }
+
+    private void search() throws IOException {
+        int source = disk.idOf(sourceLabel);
+        int destination = disk.idOf(destinationLabel);
+        if (source < 0 || destination < 0) {
+            return;
+        }
+        if (source == destination) {
+            path = new Path();
+            path.add(sourceLabel);
+            return;
+        }
+        // A level in discovery order holds (id, parent) pairs; by id it holds (id, rank), where
+        // rank is the position in discovery order
+        List<File> levelFiles = new ArrayList<>();
+        levelFiles.add(write(new ArrayLongs(new long[] {pack(source, -1)}, 1)));
+        File byId = write(new ArrayLongs(new long[] {pack(source, 0)}, 1));
+        File previousById = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            Sorter discovered = discover(byId, previousById);
+            if (discovered.total == 0) {
+                return;
+            }
+            peakFrontier = (int) Math.max(peakFrontier, discovered.total);
+            File level = newFile();
+            Sorter nextById = new Sorter();
+            int parent = -1;
+            try (Longs order = discovered.sorted();
+                 Longs parents = read(levelFiles.get(levelFiles.size() - 1), false);
+                 Writer out = new Writer(level)) {
+                int rank = 0;
+                int parentRank = -1;
+                while (order.hasNext()) {
+                    long next = order.next();
+                    int w = (int) (next & Integer.MAX_VALUE);
+                    int wanted = (int) (next >>> 32);
+                    while (parentRank < wanted) {
+                        parent = (int) (parents.next() >>> 32);
+                        parentRank++;
+                    }
+                    if (w == destination) {
+                        path = trace(destination, parent, levelFiles);
+                        return;
+                    }
+                    out.write(pack(w, parent));
+                    nextById.add(pack(w, rank++));
+                }
+            }
+            levelFiles.add(level);
+            if (previousById != null) {
+                previousById.delete();
+            }
+            previousById = byId;
+            try (Longs sorted = nextById.sorted()) {
+                byId = write(sorted);
+            }
+        }
+    }
+
+    // New nodes of the next level keyed by discovery order: parent rank, then in-edges before
+    // out-edges, then id
+    private Sorter discover(File byId, File previousById) throws IOException {
+        Sorter discovered = new Sorter();
+        try (Longs neighbours = expand(byId).sorted();
+             Longs current = read(byId, false);
+             Longs previous = previousById == null ? new ArrayLongs(new long[0], 0) : read(previousById, false)) {
+            long last = -1;
+            while (neighbours.hasNext()) {
+                long candidate = neighbours.next();
+                long w = candidate >>> 32;
+                // The smallest key for w comes first, so later ones are dropped
+                if (w == last) {
+                    continue;
+                }
+                last = w;
+                if (!contains(current, w) && !contains(previous, w)) {
+                    discovered.add(((candidate & 0xffffffffL) << 31) | w);
+                }
+            }
+        }
+        return discovered;
+    }
+
+    // Every (neighbour, key) pair of the level, key being the parent's rank times two plus one
+    // for out-edges, so in-edges of the same parent sort first
+    private Sorter expand(File byId) throws IOException {
+        Sorter candidates = new Sorter();
+        try (Longs level = read(byId, false)) {
+            while (level.hasNext()) {
+                long node = level.next();
+                int u = (int) (node >>> 32);
+                long rank = node & 0xffffffffL;
+                expanded++;
+                for (int flag = 0; flag < 2; flag++) {
+                    boolean out = flag == 1;
+                    int start = disk.offset(out, u);
+                    int end = disk.offset(out, u + 1);
+                    for (int p = start; p < end; p++) {
+                        int w = disk.target(out, p);
+                        if (w != u) {
+                            candidates.add(((long) w << 32) | (rank * 2 + flag));
+                        }
+                    }
+                    scanned += end - start;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Whether ids sorted by id contain w, consuming the ids below it
+    private static boolean contains(Longs ids, long w) throws IOException {
+        while (ids.hasNext() && ids.peek() >>> 32 < w) {
+            ids.next();
+        }
+        return ids.hasNext() && ids.peek() >>> 32 == w;
+    }
+
+    // Follows parents back through the levels, one sequential scan of each
+    private Path trace(int destination, int parent, List<File> levelFiles) throws IOException {
+        int[] ids = new int[levelFiles.size() + 1];
+        ids[0] = destination;
+        ids[1] = parent;
+        for (int l = levelFiles.size() - 1; l > 0; l--) {
+            int node = ids[levelFiles.size() - l];
+            try (Longs level = read(levelFiles.get(l), false)) {
+                long entry = level.next();
+                while (entry >>> 32 != node) {
+                    entry = level.next();
+                }
+                ids[levelFiles.size() - l + 1] = (int) entry;
+            }
+        }
+        Path found = new Path();
+        for (int id : ids) {
+            found.add(disk.label(id));
+        }
+        return found;
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    private File newFile() {
+        return new File(workDir, "run" + files++);
+    }
+
+    private File write(Longs values) throws IOException {
+        File file = newFile();
+        try (Writer out = new Writer(file)) {
+            while (values.hasNext()) {
+                out.write(values.next());
+            }
+        }
+        return file;
+    }
+
+    private Longs read(File file, boolean delete) throws IOException {
+        return new FileLongs(file, delete);
+    }
+
+    private void close() {
+        try {
+            if (disk != null) {
+                disk.close();
+            }
+        } catch (IOException e) {
+            // Read-only, nothing is lost
+        }
+        if (workDir != null) {
+            File[] left = workDir.listFiles();
+            if (left != null) {
+                for (File file : left) {
+                    file.delete();
+                }
+            }
+            workDir.delete();
+        }
+    }
+
+    // Longs in ascending order, with one value of lookahead
+    private interface Longs extends AutoCloseable {
+        boolean hasNext();
+
+        long peek();
+
+        long next() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class ArrayLongs implements Longs {
+        private final long[] values;
+        private final int count;
+        private int i;
+
+        ArrayLongs(long[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        public boolean hasNext() {
+            return i < count;
+        }
+
+        public long peek() {
+            return values[i];
+        }
+
+        public long next() {
+            return values[i++];
+        }
+
+        public void close() {
+        }
+    }
+
+    private final class FileLongs implements Longs {
+        private final File file;
+        private final boolean delete;
+        private final DataInputStream in;
+        private long remaining;
+        private long head;
+
+        FileLongs(File file, boolean delete) throws IOException {
+            this.file = file;
+            this.delete = delete;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER));
+            remaining = file.length() / 8;
+            advance();
+        }
+
+        private void advance() throws IOException {
+            if (remaining > 0) {
+                head = in.readLong();
+                spillRead += 8;
+            }
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public long peek() {
+            return head;
+        }
+
+        public long next() throws IOException {
+            long value = head;
+            remaining--;
+            advance();
+            return value;
+        }
+
+        public void close() throws IOException {
+            in.close();
+            if (delete) {
+                file.delete();
+            }
+        }
+    }
+
+    // Smallest head first across several sorted inputs
+    private static final class MergedLongs implements Longs {
+        private final Longs[] heap;
+        private int size;
+
+        MergedLongs(List<Longs> inputs) {
+            heap = new Longs[inputs.size()];
+            for (Longs input : inputs) {
+                if (input.hasNext()) {
+                    heap[size] = input;
+                    siftUp(size++);
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return size > 0;
+        }
+
+        public long peek() {
+            return heap[0].peek();
+        }
+
+        public long next() throws IOException {
+            Longs top = heap[0];
+            long value = top.next();
+            if (!top.hasNext()) {
+                top.close();
+                heap[0] = heap[--size];
+                heap[size] = null;
+            }
+            if (size > 0) {
+                siftDown(0);
+            }
+            return value;
+        }
+
+        private void siftUp(int i) {
+            Longs input = heap[i];
+            while (i > 0 && heap[(i - 1) / 2].peek() > input.peek()) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = input;
+        }
+
+        private void siftDown(int i) {
+            Longs input = heap[i];
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1].peek() < heap[child].peek()) {
+                    child++;
+                }
+                if (input.peek() <= heap[child].peek()) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = input;
+        }
+
+        public void close() throws IOException {
+            for (int i = 0; i < size; i++) {
+                heap[i].close();
+            }
+            size = 0;
+        }
+    }
+
+    private final class Writer implements AutoCloseable {
+        private final DataOutputStream out;
+
+        Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER));
+        }
+
+        void write(long value) throws IOException {
+            out.writeLong(value);
+            spillWritten += 8;
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Collects longs and hands them back sorted, spilling a sorted run whenever runCapacity is reached
+    private final class Sorter {
+        private long[] buffer = new long[MIN_BUFFER];
+        private int count;
+        // Values added in all
+        long total;
+        private final List<File> runs = new ArrayList<>();
+
+        void add(long value) throws IOException {
+            if (count == buffer.length) {
+                if (buffer.length < runCapacity) {
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(runCapacity, 2L * buffer.length));
+                } else {
+                    spill();
+                }
+            }
+            buffer[count++] = value;
+            total++;
+        }
+
+        private void spill() throws IOException {
+            Arrays.sort(buffer, 0, count);
+            runs.add(write(new ArrayLongs(buffer, count)));
+            count = 0;
+        }
+
+        // Values that fit the budget never touch the disk
+        Longs sorted() throws IOException {
+            if (runs.isEmpty()) {
+                Arrays.sort(buffer, 0, count);
+                return new ArrayLongs(buffer, count);
+            }
+            if (count > 0) {
+                spill();
+            }
+            buffer = null;
+            List<File> pending = runs;
+            while (pending.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < pending.size(); i += MAX_FAN_IN) {
+                    try (Longs group = merge(pending.subList(i, Math.min(pending.size(), i + MAX_FAN_IN)))) {
+                        merged.add(write(group));
+                    }
+                }
+                pending = merged;
+            }
+            return merge(pending);
+        }
+
+        private Longs merge(List<File> files) throws IOException {
+            List<Longs> inputs = new ArrayList<>(files.size());
+            for (File file : files) {
+                inputs.add(read(file, true));
+            }
+            return new MergedLongs(inputs);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Force-directed (Fruchterman-Reingold) layout over the int ids of a {@link CompactGraph}.
+ * Repulsion between all pairs is approximated with a Barnes-Hut quadtree rebuilt every
+ * iteration, so an iteration costs O(n log n + m). Forces are computed in parallel on the
+ * common ForkJoinPool, each node summing its own forces, so results do not depend on the
+ * number of threads. Edges attract both endpoints regardless of direction.
+ * <p>
+ * A layout can start from a previous one: nodes keep their old positions, new nodes start
+ * next to a placed neighbour, and fewer, cooler iterations settle the change.
+ */
+final class ForceLayout {
+    static final int ITERATIONS = 100;
+    // A quadtree cell is treated as one body once its size over its distance drops below this
+    private static final double THETA = 0.9;
+    private static final int LEAF_SIZE = 4;
+    private static final int MAX_DEPTH = 40;
+    // Pull towards the centre of mass per unit of distance, so disconnected parts stay in view
+    private static final double GRAVITY = 1;
+    // Nodes per parallel chunk
+    private static final int CHUNK = 1024;
+
+    final CompactGraph graph;
+    // Positions by vertex id, NaN for holes
+    final double[] x;
+    final double[] y;
+
+    private final CsrGraph csr;
+    private final int[] live;
+
+    // Quadtree over live ids: cell bounds, centre of mass, and either children or a point range
+    private int[] points;
+    private int cells;
+    private double[] cellX;
+    private double[] cellY;
+    private double[] cellSize;
+    private double[] massX;
+    private double[] massY;
+    private int[] mass;
+    private int[] firstChild;
+    private int[] pointStart;
+    private int[] pointEnd;
+
+    private ForceLayout(CompactGraph graph) {
+        this.graph = graph;
+        csr = graph.freeze();
+        int n = csr.size();
+        x = new double[n];
+        y = new double[n];
+        Arrays.fill(x, Double.NaN);
+        Arrays.fill(y, Double.NaN);
+        live = IntStream.range(0, n).filter(csr::isLive).toArray();
+    }
+
+    // Lays out graph from scratch, or refines previous (which may be null) for the same or an edited graph
+    static ForceLayout of(CompactGraph graph, ForceLayout previous, long seed) {
+        ForceLayout layout = new ForceLayout(graph);
+        int n = layout.live.length;
+        double side = Math.sqrt(Math.max(1, n));
+        SplittableRandom random = new SplittableRandom(seed);
+        int placed = 0;
+        if (previous != null) {
+            for (int v : layout.live) {
+                int old = previous.graph.idOf(graph.labelOf(v));
+                if (old >= 0 && !Double.isNaN(previous.x[old])) {
+                    layout.x[v] = previous.x[old];
+                    layout.y[v] = previous.y[old];
+                    placed++;
+                }
+            }
+        }
+        for (int v : layout.live) {
+            if (Double.isNaN(layout.x[v])) {
+                layout.placeNear(v, side, random);
+            }
+        }
+        // Mostly unchanged layouts only need a short, gentle pass
+        boolean warm = placed > n / 2;
+        int iterations = warm ? ITERATIONS / 4 : ITERATIONS;
+        double temperature = warm ? 1 : side / 4;
+        layout.run(iterations, temperature);
+        return layout;
+    }
+
+    private void placeNear(int v, double side, SplittableRandom random) {
+        int[][] adjacency = {csr.outOffsets, csr.outTargets, csr.inOffsets, csr.inTargets};
+        for (int a = 0; a < 4; a += 2) {
+            int[] offsets = adjacency[a];
+            int[] targets = adjacency[a + 1];
+            for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                int u = targets[p];
+                if (!Double.isNaN(x[u])) {
+                    x[v] = x[u] + random.nextDouble(-1, 1);
+                    y[v] = y[u] + random.nextDouble(-1, 1);
+                    return;
+                }
+            }
+        }
+        x[v] = random.nextDouble(side);
+        y[v] = random.nextDouble(side);
+    }
+
+    private void run(int iterations, double temperature) {
+        int n = live.length;
+        if (n < 2) {
+            return;
+        }
+        double[] dx = new double[x.length];
+        double[] dy = new double[x.length];
+        double cooling = Math.pow(0.01, 1.0 / iterations);
+        for (int i = 0; i < iterations; i++) {
+            buildTree();
+            double limit = temperature;
+            IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+                int[] stack = new int[4 * MAX_DEPTH + 8];
+                double[] force = new double[2];
+                for (int k = chunk * CHUNK; k < Math.min(n, (chunk + 1) * CHUNK); k++) {
+                    int v = live[k];
+                    force[0] = 0;
+                    force[1] = 0;
+                    repulse(v, stack, force);
+                    attract(v, force);
+                    force[0] += GRAVITY * (massX[0] - x[v]);
+                    force[1] += GRAVITY * (massY[0] - y[v]);
+                    dx[v] = force[0];
+                    dy[v] = force[1];
+                }
+            });
+            for (int v : live) {
+                double length = Math.sqrt(dx[v] * dx[v] + dy[v] * dy[v]);
+                if (length > 0) {
+                    double step = Math.min(length, limit) / length;
+                    x[v] += dx[v] * step;
+                    y[v] += dy[v] * step;
+                }
+            }
+            temperature *= cooling;
+        }
+    }
+
+    // k^2 / d from every other node (ideal edge length k = 1), far cells taken as one body
+    private void repulse(int v, int[] stack, double[] force) {
+        double vx = x[v];
+        double vy = y[v];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int cell = stack[--top];
+            double ddx = vx - massX[cell];
+            double ddy = vy - massY[cell];
+            double d2 = ddx * ddx + ddy * ddy;
+            if (firstChild[cell] < 0) {
+                for (int i = pointStart[cell]; i < pointEnd[cell]; i++) {
+                    int u = points[i];
+                    if (u != v) {
+                        push(vx - x[u], vy - y[u], 1, v, u, force);
+                    }
+                }
+            } else if (cellSize[cell] * cellSize[cell] < THETA * THETA * d2) {
+                push(ddx, ddy, mass[cell], v, cell, force);
+            } else {
+                for (int c = firstChild[cell]; c < firstChild[cell] + 4; c++) {
+                    if (mass[c] > 0) {
+                        stack[top++] = c;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void push(double ddx, double ddy, int weight, int v, int u, double[] force) {
+        double d2 = ddx * ddx + ddy * ddy;
+        if (d2 < 1e-12) {
+            // Coincident points: separate them in a direction fixed by their ids
+            ddx = ((v * 31 + u) & 1) == 0 ? 1e-3 : -1e-3;
+            ddy = ((v * 17 + u) & 2) == 0 ? 1e-3 : -1e-3;
+            d2 = ddx * ddx + ddy * ddy;
+        }
+        force[0] += ddx * weight / d2;
+        force[1] += ddy * weight / d2;
+    }
+
+    // d^2 / k towards each neighbour, in either edge direction
+    private void attract(int v, double[] force) {
+        int[][] adjacency = {csr.outOffsets, csr.outTargets, csr.inOffsets, csr.inTargets};
+        for (int a = 0; a < 4; a += 2) {
+            int[] offsets = adjacency[a];
+            int[] targets = adjacency[a + 1];
+            for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                int u = targets[p];
+                if (u != v) {
+                    double ddx = x[u] - x[v];
+                    double ddy = y[u] - y[v];
+                    double d = Math.sqrt(ddx * ddx + ddy * ddy);
+                    force[0] += ddx * d;
+                    force[1] += ddy * d;
+                }
+            }
+        }
+    }
+
+    private void buildTree() {
+        int n = live.length;
+        if (points == null) {
+            points = live.clone();
+            int capacity = 8 * (n / LEAF_SIZE + 1);
+            cellX = new double[capacity];
+            cellY = new double[capacity];
+            cellSize = new double[capacity];
+            massX = new double[capacity];
+            massY = new double[capacity];
+            mass = new int[capacity];
+            firstChild = new int[capacity];
+            pointStart = new int[capacity];
+            pointEnd = new int[capacity];
+        }
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int v : live) {
+            minX = Math.min(minX, x[v]);
+            minY = Math.min(minY, y[v]);
+            maxX = Math.max(maxX, x[v]);
+            maxY = Math.max(maxY, y[v]);
+        }
+        cells = 1;
+        split(0, 0, n, minX, minY, Math.max(maxX - minX, maxY - minY) + 1e-9, 0);
+    }
+
+    private void split(int cell, int start, int end, double left, double bottom, double size, int depth) {
+        cellX[cell] = left;
+        cellY[cell] = bottom;
+        cellSize[cell] = size;
+        mass[cell] = end - start;
+        pointStart[cell] = start;
+        pointEnd[cell] = end;
+        firstChild[cell] = -1;
+        if (end - start <= LEAF_SIZE || depth == MAX_DEPTH) {
+            double sx = 0;
+            double sy = 0;
+            for (int i = start; i < end; i++) {
+                sx += x[points[i]];
+                sy += y[points[i]];
+            }
+            massX[cell] = end > start ? sx / (end - start) : left;
+            massY[cell] = end > start ? sy / (end - start) : bottom;
+            return;
+        }
+        if (cells + 4 > mass.length) {
+            grow();
+        }
+        int first = cells;
+        cells += 4;
+        firstChild[cell] = first;
+        double half = size / 2;
+        double midX = left + half;
+        double midY = bottom + half;
+        // Quadrants in order: left-bottom, left-top, right-bottom, right-top
+        int xSplit = partition(start, end, midX, true);
+        int leftSplit = partition(start, xSplit, midY, false);
+        int rightSplit = partition(xSplit, end, midY, false);
+        split(first, start, leftSplit, left, bottom, half, depth + 1);
+        split(first + 1, leftSplit, xSplit, left, midY, half, depth + 1);
+        split(first + 2, xSplit, rightSplit, midX, bottom, half, depth + 1);
+        split(first + 3, rightSplit, end, midX, midY, half, depth + 1);
+        double sx = 0;
+        double sy = 0;
+        for (int c = first; c < first + 4; c++) {
+            sx += massX[c] * mass[c];
+            sy += massY[c] * mass[c];
+        }
+        massX[cell] = sx / mass[cell];
+        massY[cell] = sy / mass[cell];
+    }
+
+    // Moves the points below the split value to the front of the range; returns where the rest start
+    private int partition(int start, int end, double value, boolean byX) {
+        double[] coordinate = byX ? x : y;
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (coordinate[points[i]] < value) {
+                i++;
+            } else {
+                int t = points[i];
+                points[i] = points[j];
+                points[j--] = t;
+            }
+        }
+        return i;
+    }
+
+    private void grow() {
+        int capacity = mass.length * 2;
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        cellSize = Arrays.copyOf(cellSize, capacity);
+        massX = Arrays.copyOf(massX, capacity);
+        massY = Arrays.copyOf(massY, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        pointStart = Arrays.copyOf(pointStart, capacity);
+        pointEnd = Arrays.copyOf(pointEnd, capacity);
+    }
+}
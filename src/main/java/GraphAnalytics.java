@@ -0,0 +1,556 @@
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Whole-graph analytics over the int ids of a {@link CsrGraph}: strongly connected components,
+ * condensation, topological order, cycle finding and neighbourhood extraction, which also
+ * reads jgrapht graphs directly. Every traversal keeps its own explicit stack, so a chain of
+ * millions of vertices needs no deeper Java stack than a single edge.
+ */
+final class GraphAnalytics {
+    // Vertex sets smaller than this are finished by Tarjan instead of split further
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+    // Forward-backward splits nest at most this deep; deeper sets go to Tarjan as well
+    private static final int MAX_SPLITS = 64;
+
+    private GraphAnalytics() {
+    }
+
+    // Fills component[v] for every live vertex (-1 for holes) and returns the number of
+    // components. Components are numbered in the order Tarjan completes them, so every edge
+    // between two components goes from a higher number to a lower one
+    static int strongComponents(CsrGraph csr, int[] component) {
+        Arrays.fill(component, -1);
+        int n = csr.size();
+        int live = 0;
+        int[] vertices = new int[csr.vertexCount()];
+        for (int v = 0; v < n; v++) {
+            if (csr.isLive(v)) {
+                vertices[live++] = v;
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        tarjan(csr, vertices, null, 0, new int[n], component, count);
+        return count.get();
+    }
+
+    // Same components as strongComponents, numbered in no particular order. Vertices on no cycle
+    // are trimmed first; then forward-backward splitting (Fleischer, Hendrickson and Pinar) takes
+    // the component of a high-degree pivot, usually the giant one, and leaves three independent
+    // vertex sets that are split in parallel on the common ForkJoinPool
+    static int parallelStrongComponents(CsrGraph csr, int[] component) {
+        Arrays.fill(component, -1);
+        int n = csr.size();
+        AtomicInteger count = new AtomicInteger();
+        // Set each vertex belongs to while it has no component; -1 once it has one
+        int[] color = new int[n];
+        int[] inDegree = new int[n];
+        int[] outDegree = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (!csr.isLive(v)) {
+                color[v] = -1;
+                continue;
+            }
+            inDegree[v] = csr.inDegree(v);
+            outDegree[v] = csr.outDegree(v);
+            if (inDegree[v] == 0 || outDegree[v] == 0) {
+                color[v] = -1;
+                queue[tail++] = v;
+            }
+        }
+        // A vertex without remaining predecessors or successors is a component on its own
+        while (head < tail) {
+            int v = queue[head++];
+            component[v] = count.getAndIncrement();
+            for (int p = csr.outOffsets[v]; p < csr.outOffsets[v + 1]; p++) {
+                int w = csr.outTargets[p];
+                if (color[w] == 0 && --inDegree[w] == 0) {
+                    color[w] = -1;
+                    queue[tail++] = w;
+                }
+            }
+            for (int p = csr.inOffsets[v]; p < csr.inOffsets[v + 1]; p++) {
+                int w = csr.inTargets[p];
+                if (color[w] == 0 && --outDegree[w] == 0) {
+                    color[w] = -1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        int remaining = 0;
+        for (int v = 0; v < n; v++) {
+            if (color[v] == 0) {
+                queue[remaining++] = v;
+            }
+        }
+        if (remaining > 0) {
+            // inDegree is no longer needed and becomes the splits' scratch space
+            Split root = new Split(csr, Arrays.copyOf(queue, remaining), 0, 0, color, component, count,
+                    new AtomicInteger(), new boolean[n], new boolean[n], inDegree);
+            ForkJoinPool.commonPool().invoke(root);
+        }
+        return count.get();
+    }
+
+    // One set of vertices known to hold whole components, all with the same color
+    private static final class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Splits only live inside one pool run and are never serialized
+        private final transient CsrGraph csr;
+        private final int[] vertices;
+        private final int colorId;
+        private final int depth;
+        private final int[] color;
+        private final int[] component;
+        private final AtomicInteger count;
+        private final AtomicInteger colors;
+        // Shared by all splits: each vertex is only touched by the split that holds it
+        private final boolean[] forward;
+        private final boolean[] backward;
+        private final int[] local;
+
+        Split(CsrGraph csr, int[] vertices, int colorId, int depth, int[] color, int[] component,
+              AtomicInteger count, AtomicInteger colors, boolean[] forward, boolean[] backward, int[] local) {
+            this.csr = csr;
+            this.vertices = vertices;
+            this.colorId = colorId;
+            this.depth = depth;
+            this.color = color;
+            this.component = component;
+            this.count = count;
+            this.colors = colors;
+            this.forward = forward;
+            this.backward = backward;
+            this.local = local;
+        }
+
+        @Override
+        protected void compute() {
+            if (vertices.length < PARALLEL_THRESHOLD || depth >= MAX_SPLITS) {
+                tarjan(csr, vertices, color, colorId, local, component, count);
+                return;
+            }
+            int pivot = vertices[0];
+            long best = -1;
+            for (int v : vertices) {
+                long degree = (long) csr.inDegree(v) * csr.outDegree(v);
+                if (degree > best) {
+                    best = degree;
+                    pivot = v;
+                }
+            }
+            int start = pivot;
+            // Forward and backward closures of the pivot run side by side
+            invokeAll(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    reach(start, csr.outOffsets, csr.outTargets, forward);
+                }
+            }, new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    reach(start, csr.inOffsets, csr.inTargets, backward);
+                }
+            });
+            int id = count.getAndIncrement();
+            int[][] parts = new int[3][vertices.length];
+            int[] sizes = new int[3];
+            for (int v : vertices) {
+                boolean f = forward[v];
+                boolean b = backward[v];
+                forward[v] = false;
+                backward[v] = false;
+                if (f && b) {
+                    component[v] = id;
+                    color[v] = -1;
+                } else {
+                    int part = f ? 0 : b ? 1 : 2;
+                    parts[part][sizes[part]++] = v;
+                }
+            }
+            List<Split> next = new ArrayList<>(3);
+            for (int part = 0; part < 3; part++) {
+                if (sizes[part] > 0) {
+                    int partColor = colors.incrementAndGet();
+                    int[] members = Arrays.copyOf(parts[part], sizes[part]);
+                    for (int v : members) {
+                        color[v] = partColor;
+                    }
+                    next.add(new Split(csr, members, partColor, depth + 1, color, component, count, colors,
+                            forward, backward, local));
+                }
+            }
+            invokeAll(next);
+        }
+
+        // Marks every vertex of this set reachable from start along the given adjacency
+        private void reach(int start, int[] offsets, int[] targets, boolean[] marked) {
+            int[] queue = new int[vertices.length];
+            int head = 0;
+            int tail = 0;
+            marked[start] = true;
+            queue[tail++] = start;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                    int w = targets[p];
+                    if (color[w] == colorId && !marked[w]) {
+                        marked[w] = true;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+        }
+    }
+
+    // Iterative Tarjan over vertices, following only edges to vertices of the same color (every
+    // edge when color is null). local is scratch space indexed by vertex id
+    private static void tarjan(CsrGraph csr, int[] vertices, int[] color, int colorId, int[] local,
+                               int[] component, AtomicInteger count) {
+        int n = vertices.length;
+        for (int i = 0; i < n; i++) {
+            local[vertices[i]] = i;
+        }
+        // Indexed by position in vertices
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] next = new int[n];
+        int[] calls = new int[n];
+        int[] stack = new int[n];
+        boolean[] done = new boolean[n];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int stackSize = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = counter++;
+            next[root] = csr.outOffsets[vertices[root]];
+            stack[stackSize++] = root;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (next[v] < csr.outOffsets[vertices[v] + 1]) {
+                    int target = csr.outTargets[next[v]++];
+                    if (color != null && color[target] != colorId) {
+                        continue;
+                    }
+                    int w = local[target];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        next[w] = csr.outOffsets[target];
+                        stack[stackSize++] = w;
+                        calls[depth++] = w;
+                    } else if (!done[w]) {
+                        // Still on the stack
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (low[v] == index[v]) {
+                    int id = count.getAndIncrement();
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        done[w] = true;
+                        component[vertices[w]] = id;
+                    } while (w != v);
+                }
+                if (depth > 0) {
+                    int u = calls[depth - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+            }
+        }
+        if (color != null) {
+            for (int v : vertices) {
+                color[v] = -1;
+            }
+        }
+    }
+
+    // Graph with one vertex per component, labelled with that component's smallest label, and
+    // one edge for every pair of components joined by at least one edge
+    static CsrGraph condense(CsrGraph csr, int[] component, int count) {
+        String[] labels = new String[count];
+        for (int v = 0; v < component.length; v++) {
+            int c = component[v];
+            if (c >= 0 && (labels[c] == null || csr.label(v).compareTo(labels[c]) < 0)) {
+                labels[c] = csr.label(v);
+            }
+        }
+        int[] members = new int[component.length];
+        int[] memberOffsets = new int[count + 1];
+        for (int c : component) {
+            if (c >= 0) {
+                memberOffsets[c + 1]++;
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] fill = Arrays.copyOf(memberOffsets, count);
+        for (int v = 0; v < component.length; v++) {
+            if (component[v] >= 0) {
+                members[fill[component[v]]++] = v;
+            }
+        }
+        int[] src = new int[16];
+        int[] dst = new int[16];
+        int edges = 0;
+        int[] seen = new int[count];
+        Arrays.fill(seen, -1);
+        for (int c = 0; c < count; c++) {
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                int v = members[i];
+                for (int p = csr.outOffsets[v]; p < csr.outOffsets[v + 1]; p++) {
+                    int d = component[csr.outTargets[p]];
+                    if (d != c && seen[d] != c) {
+                        seen[d] = c;
+                        if (edges == src.length) {
+                            src = Arrays.copyOf(src, edges * 2);
+                            dst = Arrays.copyOf(dst, edges * 2);
+                        }
+                        src[edges] = c;
+                        dst[edges++] = d;
+                    }
+                }
+            }
+        }
+        return CsrGraph.build(labels, count, src, dst, null, edges);
+    }
+
+    // Subgraph induced by the vertices within k hops of the seeds, following out-edges, in-edges
+    // or both. Only the first maxFanOut edges of each vertex are followed and at most maxNodes
+    // vertices are taken, seeds first, then by hop count. Taken vertices are marked in pooled
+    // search scratch, so work is bounded by the vertices taken and their degrees
+    static CsrGraph neighborhood(Adjacency graph, int[] seeds, int k, boolean out, boolean in, int maxNodes, int maxFanOut) {
+        // A taken vertex is visited, with its id in the result as its parent
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            scratch.begin(graph.size());
+            int[] taken = new int[Math.min(maxNodes, Math.max(16, seeds.length))];
+            int count = 0;
+            for (int v : seeds) {
+                if (count < maxNodes && scratch.visit(v, count)) {
+                    if (count == taken.length) {
+                        taken = Arrays.copyOf(taken, count * 2);
+                    }
+                    taken[count++] = v;
+                }
+            }
+            int levelEnd = count;
+            for (int head = 0, depth = 0; head < count && depth < k; depth++) {
+                for (; head < levelEnd && count < maxNodes; head++) {
+                    int u = taken[head];
+                    int followed = 0;
+                    for (int pass = out ? 0 : 1; pass < (in ? 2 : 1) && followed < maxFanOut; pass++) {
+                        int end = pass == 0 ? graph.outOffset(u + 1) : graph.inOffset(u + 1);
+                        int p = pass == 0 ? graph.outOffset(u) : graph.inOffset(u);
+                        for (; p < end && followed < maxFanOut && count < maxNodes; p++) {
+                            followed++;
+                            int v = pass == 0 ? graph.outTarget(p) : graph.inTarget(p);
+                            if (scratch.visit(v, count)) {
+                                if (count == taken.length) {
+                                    taken = Arrays.copyOf(taken, Math.min(maxNodes, count * 2));
+                                }
+                                taken[count++] = v;
+                            }
+                        }
+                    }
+                }
+                head = levelEnd;
+                levelEnd = count;
+            }
+            return induced(graph, scratch, taken, count);
+        } finally {
+            SearchScratch.release(scratch);
+        }
+    }
+
+    // The same over a jgrapht graph, so default storage need not copy all of it to int ids
+    // first. Edges are followed in the graph's own order, so under maxFanOut other neighbours
+    // can be taken than from the int ids, where targets are sorted by id
+    static CsrGraph neighborhood(Graph<String, DefaultEdge> graph, Collection<String> seeds, int k, boolean out,
+                                 boolean in, int maxNodes, int maxFanOut) {
+        Map<String, Integer> local = new HashMap<>();
+        List<String> taken = new ArrayList<>();
+        for (String v : seeds) {
+            if (taken.size() < maxNodes && graph.containsVertex(v) && local.putIfAbsent(v, taken.size()) == null) {
+                taken.add(v);
+            }
+        }
+        int levelEnd = taken.size();
+        for (int head = 0, depth = 0; head < taken.size() && depth < k; depth++) {
+            for (; head < levelEnd && taken.size() < maxNodes; head++) {
+                String u = taken.get(head);
+                int followed = 0;
+                for (int pass = out ? 0 : 1; pass < (in ? 2 : 1); pass++) {
+                    for (DefaultEdge e : pass == 0 ? graph.outgoingEdgesOf(u) : graph.incomingEdgesOf(u)) {
+                        if (followed == maxFanOut || taken.size() == maxNodes) {
+                            break;
+                        }
+                        followed++;
+                        String v = pass == 0 ? graph.getEdgeTarget(e) : graph.getEdgeSource(e);
+                        if (local.putIfAbsent(v, taken.size()) == null) {
+                            taken.add(v);
+                        }
+                    }
+                }
+            }
+            head = levelEnd;
+            levelEnd = taken.size();
+        }
+        int count = taken.size();
+        int[] src = new int[16];
+        int[] dst = new int[16];
+        // Allocated at the first weight other than 1, like CsrGraph.of
+        double[] weights = null;
+        int edges = 0;
+        for (int i = 0; i < count; i++) {
+            for (DefaultEdge e : graph.outgoingEdgesOf(taken.get(i))) {
+                Integer v = local.get(graph.getEdgeTarget(e));
+                if (v != null) {
+                    if (edges == src.length) {
+                        src = Arrays.copyOf(src, edges * 2);
+                        dst = Arrays.copyOf(dst, edges * 2);
+                        if (weights != null) {
+                            weights = Arrays.copyOf(weights, edges * 2);
+                        }
+                    }
+                    double weight = graph.getEdgeWeight(e);
+                    if (weight != Graph.DEFAULT_EDGE_WEIGHT && weights == null) {
+                        weights = new double[src.length];
+                        Arrays.fill(weights, 0, edges, Graph.DEFAULT_EDGE_WEIGHT);
+                    }
+                    src[edges] = i;
+                    dst[edges] = v;
+                    if (weights != null) {
+                        weights[edges] = weight;
+                    }
+                    edges++;
+                }
+            }
+        }
+        return CsrGraph.build(taken.toArray(new String[0]), count, src, dst, weights, edges);
+    }
+
+    // Every edge of graph between the first count taken vertices, which scratch maps to their
+    // ids in the result
+    private static CsrGraph induced(Adjacency graph, SearchScratch scratch, int[] taken, int count) {
+        String[] labels = new String[count];
+        int[] src = new int[16];
+        int[] dst = new int[16];
+        double[] weights = graph.isWeighted() ? new double[16] : null;
+        int edges = 0;
+        for (int i = 0; i < count; i++) {
+            int u = taken[i];
+            labels[i] = graph.label(u);
+            int end = graph.outOffset(u + 1);
+            for (int p = graph.outOffset(u); p < end; p++) {
+                int target = graph.outTarget(p);
+                if (scratch.isVisited(target)) {
+                    int v = scratch.parent[target];
+                    if (edges == src.length) {
+                        src = Arrays.copyOf(src, edges * 2);
+                        dst = Arrays.copyOf(dst, edges * 2);
+                        if (weights != null) {
+                            weights = Arrays.copyOf(weights, edges * 2);
+                        }
+                    }
+                    src[edges] = i;
+                    dst[edges] = v;
+                    if (weights != null) {
+                        weights[edges] = graph.weight(p);
+                    }
+                    edges++;
+                }
+            }
+        }
+        return CsrGraph.build(labels, count, src, dst, weights, edges);
+    }
+
+    // Kahn's algorithm, ties broken by id; null if the graph has a cycle
+    static int[] topologicalOrder(CsrGraph csr) {
+        int n = csr.size();
+        int[] inDegree = new int[n];
+        int[] order = new int[csr.vertexCount()];
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (csr.isLive(v)) {
+                inDegree[v] = csr.inDegree(v);
+                if (inDegree[v] == 0) {
+                    order[tail++] = v;
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = order[head];
+            for (int p = csr.outOffsets[v]; p < csr.outOffsets[v + 1]; p++) {
+                int w = csr.outTargets[p];
+                if (--inDegree[w] == 0) {
+                    order[tail++] = w;
+                }
+            }
+        }
+        return tail == order.length ? order : null;
+    }
+
+    // Vertices of one directed cycle, the first repeated at the end; null if the graph has none
+    static int[] findCycle(CsrGraph csr) {
+        int n = csr.size();
+        // 0 unvisited, 1 on the current path, 2 finished
+        byte[] state = new byte[n];
+        int[] next = new int[n];
+        int[] path = new int[n];
+        int[] position = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (!csr.isLive(root) || state[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            path[depth] = root;
+            position[root] = depth++;
+            state[root] = 1;
+            next[root] = csr.outOffsets[root];
+            while (depth > 0) {
+                int v = path[depth - 1];
+                if (next[v] < csr.outOffsets[v + 1]) {
+                    int w = csr.outTargets[next[v]++];
+                    if (state[w] == 1) {
+                        int[] cycle = Arrays.copyOfRange(path, position[w], depth + 1);
+                        cycle[cycle.length - 1] = w;
+                        return cycle;
+                    }
+                    if (state[w] == 0) {
+                        state[w] = 1;
+                        path[depth] = w;
+                        position[w] = depth++;
+                        next[w] = csr.outOffsets[w];
+                    }
+                    continue;
+                }
+                state[v] = 2;
+                depth--;
+            }
+        }
+        return null;
+    }
+}
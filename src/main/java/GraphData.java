@@ -4,6 +4,10 @@ import com.mxgraph.util.mxCellRenderer;
 import org.jgrapht.*;
 import org.jgrapht.ext.JGraphXAdapter;
 import org.jgrapht.graph.*;
+import org.jgrapht.nio.Attribute;
+import org.jgrapht.nio.DefaultAttribute;
+import org.jgrapht.nio.ExportException;
+import org.jgrapht.nio.ImportException;
 import org.jgrapht.nio.dot.DOTExporter;
 import org.jgrapht.nio.dot.DOTImporter;
 
@@ -12,66 +16,437 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.io.File;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 public class GraphData {
-    private Graph<String, DefaultEdge> graphObject = new DefaultDirectedGraph<>(DefaultEdge.class);
+    // Labels that can be written to DOT without quotes
+    private static final Pattern DOT_PLAIN_ID =
+            Pattern.compile("[a-zA-Z\\u0080-\\uFFFF_][a-zA-Z\\u0080-\\uFFFF_0-9]*|-?(\\.[0-9]+|[0-9]+(\\.[0-9]*)?)");
+    private static final Set<String> DOT_KEYWORDS = Set.of("node", "edge", "graph", "digraph", "subgraph", "strict");
+    // DOT edge attribute holding the edge weight
+    static final String WEIGHT = "weight";
+    // Graphs up to this many nodes are drawn with labels by JGraphX, larger ones by GraphRenderer
+    static final int SMALL_GRAPHICS = 1000;
+    private static final long LAYOUT_SEED = 464;
+    // pageRank() defaults
+    static final double DAMPING = 0.85;
+    static final double TOLERANCE = 1e-6;
+    static final int MAX_RANK_ITERATIONS = 100;
+
+    private Graph<String, DefaultEdge> graphObject;
+    // Set only in COMPACT storage, where graphObject is a view over it
+    private CompactGraph compactGraph;
+    // A snapshot file loadSnapshot mapped, holding the whole graph until the storage is built
+    // from it. Searches run on the file meanwhile; anything else builds the storage first
+    private volatile GraphSnapshot.Mapped mapped;
+    // Serializes writers. Readers never wait for it: compact storage readers search the
+    // published snapshot, and building the next one holds it only to copy the pending edits
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Bumped by every mutation; published holds a frozen int-id copy of the graph at some version
+    private volatile long version;
+    private volatile Snapshot published;
+    // Held by the one reader building the next snapshot
+    private final ReentrantLock publishLock = new ReentrantLock();
+    // Latest version this thread wrote; its reads never get a snapshot older than that
+    private final ThreadLocal<long[]> written = ThreadLocal.withInitial(() -> new long[1]);
+    // Built on the first isReachable call and rebuilt once a later edit makes it stale
+    private volatile ReachabilityIndex reachability;
+    private final Object reachabilityLock = new Object();
+    // Opt-in search result cache, see enablePathCache
+    private volatile PathCache pathCache;
+    // Opt-in write-ahead log of every mutation, see enableMutationLog
+    private volatile MutationLog mutationLog;
+    // Last force-directed layout drawn by outputGraphics, reused as the start of the next one
+    private ForceLayout lastLayout;
+    private long layoutVersion;
+    private final Object layoutLock = new Object();
+    // Gets the metrics of every search; searches print nothing while it is unset
+    private volatile SearchListener searchListener;
 
     enum Algorithm{
         BFS,
         DFS,
         RWS,
+        // Bidirectional BFS along edge directions
+        BIBFS,
+        // BFS with each level expanded in parallel on the common ForkJoinPool
+        PBFS,
+        // Cheapest path by edge weight along edge directions
+        DIJKSTRA,
+        // DIJKSTRA guided by a heuristic, see GraphSearch(src, dst, heuristic)
+        ASTAR,
+    }
+
+    // One source/destination pair for searchAll
+    public record Query(String source, String destination) {
+    }
+
+    // Frozen int-id copy of the graph as of version
+    private record Snapshot(CompactGraph graph, long version) {
+    }
+
+    enum Storage{
+        // jgrapht directed graph, one edge object (with its weight) per edge
+        DEFAULT,
+        // Interned int ids with CSR adjacency, about 8 bytes per edge. Searches and exports read
+        // immutable snapshots, so they can run on many threads while edits continue
+        COMPACT,
+    }
+
+    // Which edges a neighborhood follows away from its seeds
+    enum Direction{
+        OUT,
+        IN,
+        BOTH,
+    }
+
+    public GraphData() {
+        this(Storage.DEFAULT);
+    }
+
+    public GraphData(Storage storage) {
+        switch(storage) {
+            case DEFAULT:
+                graphObject = new WeightedDirectedGraph();
+                break;
+            case COMPACT:
+                compactGraph = new CompactGraph();
+                graphObject = compactGraph.view();
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid choice of storage");
+        }
+        published = new Snapshot(new CompactGraph(), 0);
     }
 
     public Graph<String, DefaultEdge> getGraph() {
+        // Compact storage hands out its latest snapshot, which later edits do not touch
+        if (compactGraph != null) {
+            return new AsUnmodifiableGraph<>(published().graph().view());
+        }
+        return storage();
+    }
+
+    // Graph that readers should see: the published snapshot in compact storage, else the live graph
+    private Graph<String, DefaultEdge> readGraph() {
+        return compactGraph != null ? published().graph().view() : storage();
+    }
+
+    // The storage for a read outside the write lock, built first if it is only mapped so far
+    private Graph<String, DefaultEdge> storage() {
+        if (mapped != null) {
+            lockStorage();
+            writeLock.unlock();
+        }
         return graphObject;
     }
 
+    // Takes the write lock for an edit, or any other use of the storage itself, first building
+    // the storage from the snapshot loadSnapshot mapped if that has not happened yet
+    private void lockStorage() {
+        writeLock.lock();
+        try {
+            materialize();
+        } catch (RuntimeException | Error e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    // Copies the mapped snapshot into the storage; the caller holds the write lock. The graph
+    // stays the same, so the version does too
+    private void materialize() {
+        GraphSnapshot.Mapped file = mapped;
+        if (file != null) {
+            rebuild(file.toCsr());
+            mapped = null;
+        }
+    }
+
+    // Int-id snapshot of the graph. The first reader to find the published one stale builds
+    // the next; readers arriving meanwhile keep using the last one, unless it misses an edit
+    // made by their own thread, in which case they wait for the build and check again. Writers
+    // only wait while the build copies the pending edits: O(V) array copying plus the delta in
+    // compact storage. Default storage copies the whole jgrapht graph under the write lock
+    private Snapshot published() {
+        Snapshot snapshot = published;
+        if (snapshot.version() == version) {
+            return snapshot;
+        }
+        if (!publishLock.tryLock()) {
+            if (snapshot.version() >= written.get()[0]) {
+                return snapshot;
+            }
+            publishLock.lock();
+        }
+        try {
+            if (published.version() < version) {
+                publish();
+            }
+            return published;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    // Builds a snapshot of the current version outside the write lock and publishes it with one
+    // volatile write; the caller holds publishLock
+    private void publish() {
+        long current;
+        CompactGraph.Pending pending;
+        writeLock.lock();
+        try {
+            current = version;
+            pending = capture();
+        } finally {
+            writeLock.unlock();
+        }
+        CompactGraph snapshot = CompactGraph.snapshot(pending.build(), published.graph());
+        snapshot.view();
+        // If no edit came in meanwhile the storage takes the new CSR, so the next capture
+        // copies an empty delta; a writer holding the lock is about to make one anyway
+        if (compactGraph != null && writeLock.tryLock()) {
+            try {
+                if (version == current) {
+                    compactGraph.adopt(pending, snapshot);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        published = new Snapshot(snapshot, current);
+    }
+
+    // The graph as of now, built by Pending.build once the write lock, held by the caller, is
+    // released. Compact storage copies only its pending edits, default storage the whole graph,
+    // and a graph that is only mapped so far is copied from the file
+    private CompactGraph.Pending capture() {
+        GraphSnapshot.Mapped file = mapped;
+        if (file != null) {
+            return CompactGraph.Pending.of(file.toCsr());
+        }
+        return compactGraph != null ? compactGraph.capture() : CompactGraph.Pending.of(CsrGraph.of(graphObject));
+    }
+
+    // Mutations the storage has applied so far; batches compare it to move the version on only
+    // if something changed
+    private long modifications() {
+        return compactGraph != null ? compactGraph.modCount() : ((WeightedDirectedGraph) graphObject).modCount();
+    }
+
+    // Moves the version on after an applied mutation, with the write lock held, and makes this
+    // thread's later reads see it
+    private void changed() {
+        version++;
+        written.get()[0] = version;
+    }
+
     public boolean parseGraph(String filepath) {
 
         // Import the graph from file
         DOTImporter<String, DefaultEdge> dotImporter = new DOTImporter<>();
         dotImporter.setVertexFactory(label -> label);
+        dotImporter.addEdgeAttributeConsumer((edge, attribute) -> {
+            // Duplicate edges of a strict graph arrive without an edge object
+            if (WEIGHT.equals(edge.getSecond()) && edge.getFirst() != null) {
+                graphObject.setEdgeWeight(edge.getFirst(), parseWeight(attribute.getValue()));
+            }
+        });
+        lockStorage();
+        long before = modifications();
         try {
+            // jgrapht would read an undirected file as one-way edges; reject it like the other imports
+            DOTStreamParser.checkHeader(filepath);
             String fileContent = Files.readString(Paths.get(filepath));
             dotImporter.importGraph(graphObject, new StringReader(fileContent));
             System.out.println("Graph successfully parsed!");
             return true;
-        } catch (IOException e) {
+        } catch (IOException | ImportException e) {
+            System.out.println("Cannot read file " + filepath);
+            System.out.println(e);
+            return false;
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+            snapshotLog();
+        }
+    }
+
+    public boolean parseGraphStreaming(String filepath) {
+        return parseGraphStreaming(filepath, null);
+    }
+
+    public boolean parseGraphStreaming(String filepath, DOTStreamParser.ProgressListener listener) {
+        // Statements go straight into the graph as they are read, nothing is buffered
+        lockStorage();
+        long before = modifications();
+        try {
+            DOTStreamParser.parse(filepath, graphHandler(), listener);
+            System.out.println("Graph successfully parsed!");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Cannot read file " + filepath);
+            System.out.println(e);
+            return false;
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+            snapshotLog();
+        }
+    }
+
+    public boolean parseGraphParallel(String filepath) {
+        return parseGraphParallel(filepath, Runtime.getRuntime().availableProcessors());
+    }
+
+    public boolean parseGraphParallel(String filepath, int threads) {
+        try {
+            List<DOTParallelImporter.Batch> batches = DOTParallelImporter.tokenize(filepath, threads);
+            if (batches == null) {
+                // Too small to split, or a cut could not be verified
+                return parseGraphStreaming(filepath);
+            }
+            // Merge in file order so the result matches the sequential import
+            lockStorage();
+            long before = modifications();
+            try {
+                for (DOTParallelImporter.Batch batch : batches) {
+                    if (compactGraph != null) {
+                        batch.replay(compactGraph);
+                    } else {
+                        batch.replay(graphHandler());
+                    }
+                }
+            } finally {
+                if (modifications() != before) {
+                    changed();
+                }
+                writeLock.unlock();
+                snapshotLog();
+            }
+            System.out.println("Graph successfully parsed!");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("Cannot read file " + filepath);
             System.out.println(e);
             return false;
         }
     }
 
+    // Value of a DOT weight attribute; edge weights must be non-negative numbers
+    static double parseWeight(String value) {
+        double weight = Double.parseDouble(value);
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Invalid edge weight: " + value);
+        }
+        return weight;
+    }
+
+    private DOTStreamParser.Handler graphHandler() {
+        if (compactGraph != null) {
+            // Resolve each label once instead of going through the jgrapht view
+            return new DOTStreamParser.Handler() {
+                @Override
+                public void vertex(String id, Map<String, String> attributes) {
+                    compactGraph.addVertex(id);
+                }
+
+                @Override
+                public void edge(String source, String target, Map<String, String> attributes) {
+                    int u = compactGraph.intern(source);
+                    int v = compactGraph.intern(target);
+                    // Like DOTImporter, a repeated edge keeps the weight it was first given
+                    String weight = attributes.get(WEIGHT);
+                    if (compactGraph.addEdge(u, v) && weight != null) {
+                        compactGraph.setWeight(u, v, parseWeight(weight));
+                    }
+                }
+            };
+        }
+        return new DOTStreamParser.Handler() {
+            @Override
+            public void vertex(String id, Map<String, String> attributes) {
+                graphObject.addVertex(id);
+            }
+
+            @Override
+            public void edge(String source, String target, Map<String, String> attributes) {
+                // Edges declare their endpoints implicitly
+                graphObject.addVertex(source);
+                graphObject.addVertex(target);
+                DefaultEdge e = graphObject.addEdge(source, target);
+                String weight = attributes.get(WEIGHT);
+                if (e != null && weight != null) {
+                    graphObject.setEdgeWeight(e, parseWeight(weight));
+                }
+            }
+        };
+    }
+
     @Override
     public String toString() {
-        String graphString = "";
-        graphString+="Number of nodes: "+graphObject.vertexSet().size()+"\n";
-        graphString+="Node labels: "+graphObject.vertexSet()+"\n";
-        graphString+="Number of edges: "+graphObject.edgeSet().size()+"\n";
-        StringBuilder edges = new StringBuilder();
+        StringBuilder graphString = new StringBuilder();
+        try {
+            writeSummary(graphString);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return graphString.toString();
+    }
 
+    // Streams the toString() text, one label or edge at a time
+    private void writeSummary(Appendable out) throws IOException {
+        Graph<String, DefaultEdge> graph = readGraph();
+        out.append("Number of nodes: ").append(String.valueOf(graph.vertexSet().size())).append("\n");
+        out.append("Node labels: [");
+        String separator = "";
+        for (String v: graph.vertexSet()) {
+            out.append(separator).append(v);
+            separator = ", ";
+        }
+        out.append("]\n");
+        out.append("Number of edges: ").append(String.valueOf(graph.edgeSet().size())).append("\n");
+        out.append("Node and edge directions: ");
+        separator = "";
         // Iterate over edges to form edge string
-        for (DefaultEdge e: graphObject.edgeSet()) {
-            edges.append(e.toString().replace(":", "->"));
-            edges.append(", ");
+        for (DefaultEdge e: graph.edgeSet()) {
+            out.append(separator).append("(").append(graph.getEdgeSource(e))
+                    .append(" -> ").append(graph.getEdgeTarget(e)).append(")");
+            separator = ", ";
         }
-        edges.deleteCharAt(edges.length() - 1);
-        edges.deleteCharAt(edges.length() - 1);
-        graphString+="Node and edge directions: "+edges+"\n";
-        return graphString;
+        out.append("\n");
     }
 
     public boolean outputGraph(String filepath) {
-        // Use function defined earlier
-        String graphString = toString();
-        try {
-            Files.writeString(Paths.get(filepath), graphString, StandardCharsets.ISO_8859_1);
+        return outputGraph(filepath, StandardCharsets.UTF_8, false);
+    }
+
+    public boolean outputGraph(String filepath, Charset charset, boolean gzip) {
+        try (Writer writer = openWriter(filepath, charset, gzip)) {
+            writeSummary(writer);
             return true;
         } catch (IOException e) {
             System.out.println("Cannot write file at " + filepath);
@@ -80,38 +455,89 @@ public class GraphData {
         }
     }
 
+    // Buffered writer straight to the file, optionally gzip-compressed
+    private static Writer openWriter(String path, Charset charset, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(Paths.get(path));
+        if (gzip) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, charset), 1 << 16);
+    }
+
     public boolean addNode(String label) {
-        // Check if node already exists
-        boolean existing = graphObject.vertexSet().stream().anyMatch(v -> Objects.equals(v, label));
+        long logged = 0;
+        lockStorage();
+        try {
+            // Check if node already exists
+            boolean existing = graphObject.containsVertex(label);
 
-        if (existing) {
-            System.out.println("Node with label "+label+" already exists!");
-            return false;
-        }
-        else {
-            graphObject.addVertex(label);
-            return true;
+            if (existing) {
+                System.out.println("Node with label "+label+" already exists!");
+                return false;
+            }
+            else {
+                graphObject.addVertex(label);
+                changed();
+                logged = log(MutationLog.ADD_NODE, label, null);
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+            commitLog(logged);
         }
     }
 
     public boolean addNodes(String[] labels) {
         boolean result = true;
         for(String label: labels) {
-            // Store the logical AND for the boolean values returned by the function
-            result = result && addNode(label);
+            // Keep inserting after a duplicate, but report that one of them failed
+            result = addNode(label) && result;
         }
         return result;
     }
 
+    public boolean[] addNodes(Collection<String> labels) {
+        // Batch variant: one result per label, no console output
+        boolean[] results = new boolean[labels.size()];
+        int i = 0;
+        long logged = 0;
+        lockStorage();
+        long before = modifications();
+        try {
+            for(String label: labels) {
+                results[i] = label != null && graphObject.addVertex(label);
+                if (results[i++]) {
+                    logged = log(MutationLog.ADD_NODE, label, null);
+                }
+            }
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+            commitLog(logged);
+        }
+        return results;
+    }
+
     public void removeNode(String label) throws Exception {
-        // Check if node already exists
-        boolean existing = graphObject.vertexSet().stream().anyMatch(v -> Objects.equals(v, label));
+        long logged = 0;
+        lockStorage();
+        try {
+            // Check if node already exists
+            boolean existing = graphObject.containsVertex(label);
 
-        if (existing) {
-            graphObject.removeVertex(label);
-        }
-        else {
-            throw new Exception("Node with label "+label+" does not exist!");
+            if (existing) {
+                graphObject.removeVertex(label);
+                changed();
+                logged = log(MutationLog.REMOVE_NODE, label, null);
+            }
+            else {
+                throw new Exception("Node with label "+label+" does not exist!");
+            }
+        } finally {
+            writeLock.unlock();
+            commitLog(logged);
         }
     }
 
@@ -121,60 +547,665 @@ public class GraphData {
         }
     }
 
+    public boolean[] removeNodes(Collection<String> labels) {
+        // Batch variant: one result per label instead of throwing on the first missing node
+        boolean[] results = new boolean[labels.size()];
+        int i = 0;
+        long logged = 0;
+        lockStorage();
+        long before = modifications();
+        try {
+            for(String label: labels) {
+                results[i] = label != null && graphObject.removeVertex(label);
+                if (results[i++]) {
+                    logged = log(MutationLog.REMOVE_NODE, label, null);
+                }
+            }
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+            commitLog(logged);
+        }
+        return results;
+    }
+
     public boolean addEdge(String srcLabel, String dstLabel) {
-        boolean srcnodeexisting = graphObject.vertexSet().stream().anyMatch(v -> Objects.equals(v, srcLabel));
-        boolean dstnodeexisting = graphObject.vertexSet().stream().anyMatch(v -> Objects.equals(v, dstLabel));
-        DefaultEdge edgeexisting = graphObject.getEdge(srcLabel, dstLabel);
-        if (edgeexisting!=null) {
-            System.out.println("Edge "+ edgeexisting + " already exists!");
-            return false;
+        long logged = 0;
+        lockStorage();
+        try {
+            boolean srcnodeexisting = graphObject.containsVertex(srcLabel);
+            boolean dstnodeexisting = graphObject.containsVertex(dstLabel);
+            DefaultEdge edgeexisting = graphObject.getEdge(srcLabel, dstLabel);
+            if (edgeexisting!=null) {
+                System.out.println("Edge "+ edgeexisting + " already exists!");
+                return false;
+            }
+            if (!srcnodeexisting) {
+                System.out.println("Node "+ srcLabel+" does not exist!");
+                return false;
+            } else if (!dstnodeexisting) {
+                System.out.println("Node "+ dstLabel+" does not exist!");
+                return false;
+            } else {
+                // An edge between nodes that already reach each other leaves the index valid
+                ReachabilityIndex index = reachability;
+                boolean implied = index != null && index.version == version && index.isReachable(srcLabel, dstLabel);
+                graphObject.addEdge(srcLabel, dstLabel);
+                changed();
+                if (implied) {
+                    reachability = index.at(version);
+                }
+                logged = log(MutationLog.ADD_EDGE, srcLabel, dstLabel);
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+            commitLog(logged);
         }
-        if (!srcnodeexisting) {
-            System.out.println("Node "+ srcLabel+" does not exist!");
-            return false;
-        } else if (!dstnodeexisting) {
-            System.out.println("Node "+ dstLabel+" does not exist!");
+    }
+
+    public boolean addEdge(String srcLabel, String dstLabel, double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            System.out.println("Edge weight "+ weight+" is not a non-negative number!");
             return false;
-        } else {
-            graphObject.addEdge(srcLabel, dstLabel);
+        }
+        // Held across both steps so readers never see the edge with its default weight
+        long logged = 0;
+        lockStorage();
+        try {
+            if (!addEdge(srcLabel, dstLabel)) {
+                return false;
+            }
+            graphObject.setEdgeWeight(graphObject.getEdge(srcLabel, dstLabel), weight);
+            ReachabilityIndex index = reachability;
+            changed();
+            // Weights do not affect reachability
+            if (index != null && index.version == version - 1) {
+                reachability = index.at(version);
+            }
+            logged = log(MutationLog.SET_WEIGHT, srcLabel, dstLabel, weight);
             return true;
+        } finally {
+            writeLock.unlock();
+            commitLog(logged);
+        }
+    }
+
+    public boolean[] addEdges(String[][] edges) {
+        // Batch variant: each row is {src, dst}; one result per row, no console output
+        boolean[] results = new boolean[edges.length];
+        long logged = 0;
+        lockStorage();
+        long before = modifications();
+        try {
+            for(int i = 0; i < edges.length; i++) {
+                String[] edge = edges[i];
+                if (edge == null || edge.length != 2
+                        || !graphObject.containsVertex(edge[0]) || !graphObject.containsVertex(edge[1])) {
+                    continue;
+                }
+                results[i] = graphObject.addEdge(edge[0], edge[1]) != null;
+                if (results[i]) {
+                    logged = log(MutationLog.ADD_EDGE, edge[0], edge[1]);
+                }
+            }
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+            commitLog(logged);
         }
+        return results;
     }
 
     public Path GraphSearch(String src, String dst, Algorithm algo) {
+        return search(src, dst, algo);
+    }
+
+    // BFS over a snapshot file written by saveSnapshot, without loading it: adjacency is read in
+    // place and each level is kept in sorted runs on disk next to the file, sorting in about
+    // memoryBudget bytes of heap. Finds the same path as GraphSearch with Algorithm.BFS on the
+    // loaded graph, for graphs too large for the heap; this object's own graph is not used
+    public Path GraphSearchOnDisk(String snapshotPath, String src, String dst, long memoryBudget) {
+        try {
+            return run(new ExternalBFS(snapshotPath, src, dst, memoryBudget), Algorithm.BFS, src, dst);
+        } catch (UncheckedIOException e) {
+            System.out.println("Cannot search file " + snapshotPath);
+            System.out.println(e.getCause());
+            return null;
+        }
+    }
+
+    // Reports each search's work and latency, e.g. to SearchListener.console() or a SearchHistogram.
+    // Null turns reporting off again
+    public void setSearchListener(SearchListener listener) {
+        searchListener = listener;
+    }
+
+    private Path run(SearchStrategy strategy, Algorithm algo, String src, String dst) {
+        return new Context(strategy).searchByStrategy(algo, src, dst, searchListener);
+    }
+
+    // Caches up to capacity search results, least recently used evicted first. Any edit to the
+    // graph invalidates them. RWS is never cached since every walk can differ
+    public void enablePathCache(int capacity) {
+        pathCache = new PathCache(capacity);
+    }
+
+    public void disablePathCache() {
+        pathCache = null;
+    }
+
+    // Hit, miss, eviction and invalidation counts, or null while caching is off
+    public PathCache.Stats pathCacheStats() {
+        PathCache cache = pathCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    private Path search(String src, String dst, Algorithm algo) {
+        PathCache cache = pathCache;
+        if (cache == null || algo == Algorithm.RWS) {
+            return run(strategy(src, dst, algo), algo, src, dst);
+        }
+        PathCache.Key key = new PathCache.Key(src, dst, algo);
+        long before = version;
+        Path cached = cache.get(key, before);
+        if (cached != null) {
+            return cached == PathCache.NONE ? null : cached;
+        }
+        // Snapshot searches read the published snapshot, which may be older or newer than
+        // before; such results are returned but not cached. A mapped file still holds the graph
+        // as of before unless the version moves on during the search
+        SearchStrategy strategy = fileSearch(src, dst, algo, null);
+        boolean current = strategy != null || compactGraph == null && !intOnly(algo) || published().version() == before;
+        Path path = run(strategy != null ? strategy : strategy(src, dst, algo), algo, src, dst);
+        // Cancelled searches stop early, and edits made meanwhile may not be in the result
+        if (current && version == before && !Thread.currentThread().isInterrupted()) {
+            cache.put(key, before, path);
+        }
+        return path;
+    }
+
+    public List<CompletableFuture<Path>> searchAll(List<Query> queries, Algorithm algo) {
+        return searchAll(queries, algo, null);
+    }
+
+    // Runs every query on its own virtual thread. Futures are in query order and complete with
+    // the path or null, or exceptionally with whatever the search threw; cancelling one, or its
+    // timeout expiring, interrupts that search
+    public List<CompletableFuture<Path>> searchAll(List<Query> queries, Algorithm algo, Duration timeout) {
+        List<CompletableFuture<Path>> results = new ArrayList<>(queries.size());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        // The searches see at least the edits this thread made
+        long seen = written.get()[0];
+        try {
+            for (Query query : queries) {
+                CompletableFuture<Path> result = new CompletableFuture<>();
+                Future<?> task = executor.submit(() -> {
+                    written.get()[0] = seen;
+                    try {
+                        result.complete(search(query.source(), query.destination(), algo));
+                    } catch (Throwable e) {
+                        // Errors too, or a join() without timeout would wait forever
+                        result.completeExceptionally(e);
+                    }
+                });
+                result.whenComplete((path, e) -> {
+                    if (e != null) {
+                        task.cancel(true);
+                    }
+                });
+                if (timeout != null) {
+                    result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                results.add(result);
+            }
+        } finally {
+            // Already submitted searches keep running; the executor just takes no new ones
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    // A* with a heuristic giving a lower bound on the remaining cost from a node to dst
+    public Path GraphSearch(String src, String dst, ToDoubleFunction<String> heuristic) {
+        return run(strategy(src, dst, Algorithm.ASTAR, heuristic), Algorithm.ASTAR, src, dst);
+    }
+
+    // RWS with a fixed seed: the same seed on the same graph finds the same path
+    public Path RandomWalkSearch(String src, String dst, long seed) {
         SearchStrategy strategy;
+        GraphSnapshot.Mapped file = mapped;
+        if (file != null && compactGraph != null) {
+            // The file has the ids the snapshot would, so the walk is the same
+            strategy = new IntRWS(file.idOf(src), file.idOf(dst), file, new SplittableRandom(seed));
+        } else if (compactGraph != null) {
+            CompactGraph snapshot = intSnapshot();
+            strategy = new IntRWS(snapshot.idOf(src), snapshot.idOf(dst), snapshot.freeze(), new SplittableRandom(seed));
+        } else {
+            strategy = new RWS(src, dst, storage(), seed);
+        }
+        return run(strategy, Algorithm.RWS, src, dst);
+    }
+
+    // Runs several seeded walks in parallel and returns the path of the first one to finish;
+    // null, like a failed search, if walkers is below 1
+    public Path RandomWalkSearch(String src, String dst, long seed, int walkers) {
+        if (walkers < 1) {
+            System.out.println("Invalid walker count " + walkers);
+            return null;
+        }
+        GraphSnapshot.Mapped file = mapped;
+        SearchStrategy strategy;
+        if (file != null) {
+            strategy = new IntParallelRWS(file.idOf(src), file.idOf(dst), file, seed, walkers);
+        } else {
+            CompactGraph snapshot = intSnapshot();
+            strategy = new IntParallelRWS(snapshot.idOf(src), snapshot.idOf(dst), snapshot.freeze(), seed, walkers);
+        }
+        return run(strategy, Algorithm.RWS, src, dst);
+    }
+
+    // Loopless paths from src to dst, cheapest first (fewest edges when unweighted), each
+    // searched only when the stream asks for it; take the k best with limit(k)
+    public Stream<Path> kShortestPaths(String src, String dst) {
+        CompactGraph snapshot = intSnapshot();
+        if (!hasNodes(snapshot, src, dst)) {
+            return Stream.empty();
+        }
+        return stream(new KShortestPaths(snapshot.idOf(src), snapshot.idOf(dst), snapshot.freeze()));
+    }
+
+    // Paths from src to dst that repeat no node, with at most maxDepth edges and at most
+    // maxCount paths, found depth first as the stream is consumed
+    public Stream<Path> allSimplePaths(String src, String dst, int maxDepth, long maxCount) {
+        CompactGraph snapshot = intSnapshot();
+        if (!hasNodes(snapshot, src, dst)) {
+            return Stream.empty();
+        }
+        return stream(new SimplePaths(snapshot.idOf(src), snapshot.idOf(dst), snapshot.freeze(), maxDepth, maxCount));
+    }
+
+    private static boolean hasNodes(CompactGraph snapshot, String src, String dst) {
+        for (String node : new String[] {src, dst}) {
+            if (snapshot.idOf(node) < 0) {
+                System.out.println("Node "+ node+" does not exist!");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Stream<Path> stream(Iterator<Path> paths) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paths, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private SearchStrategy strategy(String src, String dst, Algorithm algo) {
+        return strategy(src, dst, algo, null);
+    }
+
+    private SearchStrategy strategy(String src, String dst, Algorithm algo, ToDoubleFunction<String> heuristic) {
+        SearchStrategy strategy = fileSearch(src, dst, algo, heuristic);
+        if (strategy != null) {
+            return strategy;
+        }
+        Graph<String, DefaultEdge> graph;
+        // Compact storage searches run on one consistent snapshot, unaffected by edits made
+        // meanwhile. Some algorithms only exist on int ids; default storage runs them on its
+        // int-id copy for the current version
+        if (compactGraph != null || intOnly(algo)) {
+            CompactGraph snapshot = intSnapshot();
+            strategy = intSearch(snapshot.freeze(), snapshot.idOf(src), snapshot.idOf(dst), algo, heuristic);
+            if (strategy != null) {
+                return strategy;
+            }
+            graph = snapshot.view();
+        } else {
+            graph = storage();
+        }
         switch(algo) {
             case BFS:
-                strategy = new BFS(src, dst, graphObject);
-                break;
+                return new BFS(src, dst, graph);
             case DFS:
-                strategy = new DFS(src, dst, graphObject);
-                break;
+                return new DFS(src, dst, graph);
             case RWS:
-                strategy = new RWS(src, dst, graphObject);
-                break;
+                return new RWS(src, dst, graph);
+            case BIBFS:
+                return new BIBFS(src, dst, graph);
             default:
                 throw new IllegalArgumentException("Invalid choice of algorithm");
         }
-        Context searchContext = new Context(strategy);
-        return searchContext.searchByStrategy();
     }
-    public void removeEdge(String srcLabel, String dstLabel) throws Exception {
-        DefaultEdge edgeexisting = graphObject.getEdge(srcLabel, dstLabel);
-        // Check if edge exists
-        if (edgeexisting==null) {
-            throw new Exception("Edge does not exist!");
+
+    private static boolean intOnly(Algorithm algo) {
+        return algo == Algorithm.PBFS || algo == Algorithm.DIJKSTRA || algo == Algorithm.ASTAR;
+    }
+
+    // Nodes reachable from any of the roots along edge directions; unknown roots are ignored
+    public ReachableSet reachableFrom(Collection<String> roots) {
+        CompactGraph snapshot = intSnapshot();
+        int[] ids = roots.stream().mapToInt(snapshot::idOf).filter(id -> id >= 0).toArray();
+        MultiSourceBFS search = new MultiSourceBFS(snapshot.freeze());
+        int[] distance = search.search(ids);
+        return new ReachableSet(snapshot, distance, search.reached(), search.depth());
+    }
+
+    // Whether dst can be reached from src along edge directions; false if either node is missing.
+    // Answered from a reachability index instead of a traversal, see ReachabilityIndex
+    public boolean isReachable(String src, String dst) {
+        return reachabilityIndex().isReachable(src, dst);
+    }
+
+    // Strongly connected components, sinks first: edges only lead from a component to ones
+    // listed before it
+    public List<Set<String>> stronglyConnectedComponents() {
+        CsrGraph csr = intSnapshot().freeze();
+        int[] component = new int[csr.size()];
+        return components(csr, component, GraphAnalytics.strongComponents(csr, component));
+    }
+
+    // The same components in no particular order, found on the common ForkJoinPool; for graphs
+    // of millions of nodes
+    public List<Set<String>> stronglyConnectedComponentsParallel() {
+        CsrGraph csr = intSnapshot().freeze();
+        int[] component = new int[csr.size()];
+        return components(csr, component, GraphAnalytics.parallelStrongComponents(csr, component));
+    }
+
+    private static List<Set<String>> components(CsrGraph csr, int[] component, int count) {
+        List<Set<String>> components = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            components.add(new HashSet<>());
+        }
+        for (int v = 0; v < component.length; v++) {
+            if (component[v] >= 0) {
+                components.get(component[v]).add(csr.label(v));
+            }
+        }
+        return components;
+    }
+
+    // Acyclic graph with one node per strongly connected component, labelled with the smallest
+    // label in it, and an unweighted edge wherever an edge joins two components
+    public GraphData condense() {
+        CsrGraph csr = intSnapshot().freeze();
+        int[] component = new int[csr.size()];
+        int count = GraphAnalytics.strongComponents(csr, component);
+        GraphData condensed = new GraphData(compactGraph != null ? Storage.COMPACT : Storage.DEFAULT);
+        condensed.writeLock.lock();
+        try {
+            condensed.replaceGraph(GraphAnalytics.condense(csr, component, count));
+        } finally {
+            condensed.writeLock.unlock();
+        }
+        return condensed;
+    }
+
+    // Nodes within k hops of the seeds along the given direction, with every edge between them
+    // and its weight, as a separate graph with this one's storage; unknown seeds are ignored.
+    // Extraction reads only the nodes it takes and their edges: in the compact snapshot, in a
+    // file loadSnapshot mapped, or in the jgrapht graph of default storage, under the write
+    // lock. Only that part is copied, so the result can be edited or exported with
+    // outputDOTGraph, outputGraphics or saveSnapshot at a cost set by its own size
+    public GraphData neighborhood(Collection<String> seeds, int k, Direction direction) {
+        return neighborhood(seeds, k, direction, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    // The same, taking at most maxNodes nodes (seeds first, then nearer before farther) and
+    // following only the first maxFanOut edges of each node, so a node with millions of
+    // neighbours adds at most maxFanOut of them
+    public GraphData neighborhood(Collection<String> seeds, int k, Direction direction, int maxNodes, int maxFanOut) {
+        if (k < 0 || maxNodes < 0 || maxFanOut < 0) {
+            System.out.println("Invalid neighborhood limits");
+            return null;
+        }
+        boolean out = direction != Direction.IN;
+        boolean in = direction != Direction.OUT;
+        CsrGraph part;
+        GraphSnapshot.Mapped file = mapped;
+        if (file == null && compactGraph == null) {
+            lockStorage();
+            try {
+                part = GraphAnalytics.neighborhood(graphObject, seeds, k, out, in, maxNodes, maxFanOut);
+            } finally {
+                writeLock.unlock();
+            }
         } else {
-            graphObject.removeEdge(srcLabel, dstLabel);
+            Adjacency graph;
+            ToIntFunction<String> idOf;
+            if (file != null) {
+                graph = file;
+                idOf = file::idOf;
+            } else {
+                CompactGraph snapshot = intSnapshot();
+                graph = snapshot.freeze();
+                idOf = snapshot::idOf;
+            }
+            int[] ids = seeds.stream().mapToInt(idOf).filter(id -> id >= 0).toArray();
+            part = GraphAnalytics.neighborhood(graph, ids, k, out, in, maxNodes, maxFanOut);
+        }
+        GraphData neighborhood = new GraphData(compactGraph != null ? Storage.COMPACT : Storage.DEFAULT);
+        neighborhood.writeLock.lock();
+        try {
+            neighborhood.replaceGraph(part);
+        } finally {
+            neighborhood.writeLock.unlock();
+        }
+        return neighborhood;
+    }
+
+    // Every node before all the nodes its edges lead to, or null if the graph has a cycle
+    public List<String> topologicalOrder() {
+        CsrGraph csr = intSnapshot().freeze();
+        int[] order = GraphAnalytics.topologicalOrder(csr);
+        if (order == null) {
+            System.out.println("Graph has a cycle!");
+            return null;
+        }
+        return labels(csr, order);
+    }
+
+    // Nodes along one directed cycle, starting and ending with the same node; null if there is none
+    public List<String> findCycle() {
+        CsrGraph csr = intSnapshot().freeze();
+        int[] cycle = GraphAnalytics.findCycle(csr);
+        return cycle == null ? null : labels(csr, cycle);
+    }
+
+    private static List<String> labels(CsrGraph csr, int[] ids) {
+        List<String> labels = new ArrayList<>(ids.length);
+        for (int v : ids) {
+            labels.add(csr.label(v));
+        }
+        return labels;
+    }
+
+    // PageRank with damping 0.85, run until the total change of an iteration is below 1e-6
+    public Ranking pageRank() {
+        return pageRank(DAMPING, TOLERANCE, MAX_RANK_ITERATIONS);
+    }
+
+    public Ranking pageRank(double damping, double tolerance, int maxIterations) {
+        return rank(intSnapshot(), null, damping, tolerance, maxIterations);
+    }
+
+    // PageRank that teleports only to the seed nodes, ranking nodes by closeness to them
+    public Ranking personalizedPageRank(Collection<String> seeds) {
+        return personalizedPageRank(seeds, DAMPING, TOLERANCE, MAX_RANK_ITERATIONS);
+    }
+
+    public Ranking personalizedPageRank(Collection<String> seeds, double damping, double tolerance, int maxIterations) {
+        CompactGraph snapshot = intSnapshot();
+        double[] teleport = new double[snapshot.freeze().size()];
+        int found = 0;
+        for (String seed : new HashSet<>(seeds)) {
+            int v = snapshot.idOf(seed);
+            if (v < 0) {
+                System.out.println("Node "+ seed+" does not exist!");
+                return null;
+            }
+            teleport[v] = 1;
+            found++;
+        }
+        if (found == 0) {
+            System.out.println("No seed nodes given!");
+            return null;
+        }
+        for (int v = 0; v < teleport.length; v++) {
+            teleport[v] /= found;
+        }
+        return rank(snapshot, teleport, damping, tolerance, maxIterations);
+    }
+
+    private Ranking rank(CompactGraph snapshot, double[] teleport, double damping, double tolerance, int maxIterations) {
+        if (!(damping >= 0 && damping < 1) || !(tolerance >= 0) || maxIterations < 1) {
+            System.out.println("Invalid PageRank parameters");
+            return null;
+        }
+        return GraphRanking.pageRank(snapshot, teleport, damping, tolerance, maxIterations);
+    }
+
+    // Approximate betweenness from shortest paths out of samples random sources, scaled to the
+    // whole graph; exact when samples is at least the number of nodes
+    public Ranking betweenness(int samples, long seed) {
+        if (samples < 1) {
+            System.out.println("Invalid sample count " + samples);
+            return null;
+        }
+        return GraphRanking.betweenness(intSnapshot(), samples, seed);
+    }
+
+    // Index for the current version. One caller rebuilds a stale index while the others wait for it
+    ReachabilityIndex reachabilityIndex() {
+        ReachabilityIndex index = reachability;
+        if (index != null && index.version == version) {
+            return index;
+        }
+        synchronized (reachabilityLock) {
+            index = reachability;
+            if (index != null && index.version == version) {
+                return index;
+            }
+            CompactGraph.Pending pending;
+            long current;
+            // Only the copy is taken under the write lock; compaction and labelling run while
+            // edits continue
+            writeLock.lock();
+            try {
+                current = version;
+                pending = capture();
+            } finally {
+                writeLock.unlock();
+            }
+            index = new ReachabilityIndex(new CompactGraph(pending.build()), current);
+            reachability = index;
+            return index;
+        }
+    }
+
+    // Frozen int-id copy of the graph. Default storage builds it on the first call after an
+    // edit and keeps it, so queries in between share one copy
+    private CompactGraph intSnapshot() {
+        return published().graph();
+    }
+
+    // Compact storage searches its int ids with pooled scratch state; null if algo has no int variant
+    private static SearchStrategy intSearch(Adjacency graph, int srcId, int dstId, Algorithm algo,
+                                            ToDoubleFunction<String> heuristic) {
+        switch(algo) {
+            case BFS:
+                return new IntBFS(srcId, dstId, graph);
+            case DFS:
+                return new IntDFS(srcId, dstId, graph);
+            case RWS:
+                return new IntRWS(srcId, dstId, graph);
+            case PBFS:
+                return new IntPBFS(srcId, dstId, graph);
+            case DIJKSTRA:
+                return new Dijkstra(srcId, dstId, graph);
+            case ASTAR:
+                return new AStar(srcId, dstId, graph, heuristic);
+            default:
+                return null;
+        }
+    }
+
+    // Search on the file loadSnapshot mapped, as long as the storage has not been built from it;
+    // null after that, or for algorithms with no int-id version
+    private SearchStrategy fileSearch(String src, String dst, Algorithm algo, ToDoubleFunction<String> heuristic) {
+        GraphSnapshot.Mapped file = mapped;
+        return file == null ? null : intSearch(file, file.idOf(src), file.idOf(dst), algo, heuristic);
+    }
+    public void removeEdge(String srcLabel, String dstLabel) throws Exception {
+        long logged = 0;
+        lockStorage();
+        try {
+            DefaultEdge edgeexisting = graphObject.getEdge(srcLabel, dstLabel);
+            // Check if edge exists
+            if (edgeexisting==null) {
+                throw new Exception("Edge does not exist!");
+            } else {
+                graphObject.removeEdge(srcLabel, dstLabel);
+                changed();
+                logged = log(MutationLog.REMOVE_EDGE, srcLabel, dstLabel);
+            }
+        } finally {
+            writeLock.unlock();
+            commitLog(logged);
         }
     }
 
     public boolean outputDOTGraph(String path) {
-        DOTExporter<String, DefaultEdge> exporter = new DOTExporter<>(v -> v);
-        Writer writer = new StringWriter();
-        exporter.exportGraph(graphObject, writer);
+        return outputDOTGraph(path, StandardCharsets.UTF_8, false);
+    }
+
+    public boolean outputDOTGraph(String path, Charset charset, boolean gzip) {
+        Graph<String, DefaultEdge> graph = readGraph();
+        DOTExporter<String, DefaultEdge> exporter = new DOTExporter<>(GraphData::dotId);
+        // Only non-default weights are written, so unweighted graphs export as before
+        exporter.setEdgeAttributeProvider(e -> {
+            double weight = graph.getEdgeWeight(e);
+            if (weight == Graph.DEFAULT_EDGE_WEIGHT) {
+                return null;
+            }
+            return Map.<String, Attribute>of(WEIGHT, DefaultAttribute.createAttribute(weight));
+        });
+        // The exporter writes statement by statement into the buffered file writer
+        try (Writer writer = openWriter(path, charset, gzip)) {
+            exporter.exportGraph(graph, writer);
+            return true;
+        } catch (IOException | ExportException e) {
+            System.out.println("Cannot write file at " + path);
+            System.out.println(e);
+            return false;
+        }
+    }
+
+    // Labels that are not plain DOT ids are written as quoted strings
+    static String dotId(String label) {
+        if (DOT_PLAIN_ID.matcher(label).matches() && !DOT_KEYWORDS.contains(label.toLowerCase())) {
+            return label;
+        }
+        return "\"" + label.replace("\"", "\\\"") + "\"";
+    }
+
+    public boolean saveSnapshot(String path) {
+        CsrGraph csr;
+        if (compactGraph != null) {
+            csr = intSnapshot().freeze();
+        } else {
+            writeLock.lock();
+            try {
+                csr = capture().build();
+            } finally {
+                writeLock.unlock();
+            }
+        }
         try {
-            Files.writeString(Paths.get(path), writer.toString(), StandardCharsets.ISO_8859_1);
+            GraphSnapshot.write(csr, path);
             return true;
         } catch (IOException e) {
             System.out.println("Cannot write file at " + path);
@@ -183,22 +1214,319 @@ public class GraphData {
         }
     }
 
-    public void outputGraphics(String path, String format) {
-        JGraphXAdapter<String, DefaultEdge> graphAdapter =
-                new JGraphXAdapter<String, DefaultEdge>(graphObject);
-        mxIGraphLayout layout = new mxCircleLayout(graphAdapter);
-        layout.execute(graphAdapter.getDefaultParent());
+    public boolean loadSnapshot(String path) {
+        return loadSnapshot(path, false);
+    }
 
-        BufferedImage image =
-                mxCellRenderer.createBufferedImage(graphAdapter, null, 2, Color.WHITE, true, null);
-        File imgFile = new File(path+"gen_graph."+format);
+    // Replaces the current graph with the snapshot's contents. The file is mapped and searches
+    // run on it straight away; the storage is only built from it by the first call that needs
+    // more than a search, such as an edit or an export. Loading checks the header and the file
+    // size; verify also reads the whole file once to check its checksum. Files that cannot be
+    // mapped this way, e.g. ones saved before the label table, are read and verified in full
+    public boolean loadSnapshot(String path, boolean verify) {
+        GraphSnapshot.Mapped file;
+        CsrGraph csr = null;
         try {
-            ImageIO.write(image, "PNG", imgFile);
+            file = GraphSnapshot.Mapped.open(path, verify);
+            if (file == null) {
+                csr = GraphSnapshot.read(path);
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot read file " + path);
+            System.out.println(e);
+            return false;
+        }
+        writeLock.lock();
+        try {
+            if (file != null) {
+                // Set first, so readers wait for the storage rather than see it empty; the old
+                // graph is dropped now instead of when the storage is built
+                mapped = file;
+                rebuild(CsrGraph.empty());
+                changed();
+            } else {
+                replaceGraph(csr);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        snapshotLog();
+        System.out.println("Snapshot successfully loaded!");
+        return true;
+    }
+
+    // Swaps in csr as the whole graph; the caller holds the write lock
+    private void replaceGraph(CsrGraph csr) {
+        mapped = null;
+        rebuild(csr);
+        changed();
+    }
+
+    // Makes the storage hold exactly csr
+    private void rebuild(CsrGraph csr) {
+        if (compactGraph != null) {
+            compactGraph = new CompactGraph(csr);
+            graphObject = compactGraph.view();
+        } else {
+            Graph<String, DefaultEdge> graph = new WeightedDirectedGraph();
+            for (int v = 0; v < csr.size(); v++) {
+                graph.addVertex(csr.label(v));
+            }
+            for (int u = 0; u < csr.size(); u++) {
+                for (int p = csr.outOffsets[u]; p < csr.outOffsets[u + 1]; p++) {
+                    DefaultEdge e = graph.addEdge(csr.label(u), csr.label(csr.outTargets[p]));
+                    if (csr.isWeighted()) {
+                        graph.setEdgeWeight(e, csr.weight(p));
+                    }
+                }
+            }
+            graphObject = graph;
+        }
+    }
+
+    // Makes every later edit durable in directory: edits are appended to a write-ahead log and
+    // fsynced before they return, while concurrent writers share each fsync. The log is compacted
+    // into a snapshot once it outgrows the last one. A directory that already holds a log replaces
+    // the current graph with the state it recovers; a new one starts from the current graph
+    public boolean enableMutationLog(String directory) {
+        MutationLog log;
+        boolean fresh;
+        lockStorage();
+        long before = modifications();
+        try {
+            if (mutationLog != null) {
+                System.out.println("Mutation log is already enabled");
+                return false;
+            }
+            fresh = MutationLog.isEmpty(Paths.get(directory));
+            log = MutationLog.open(Paths.get(directory), new MutationLog.Replay() {
+                @Override
+                public void snapshot(CsrGraph graph) {
+                    replaceGraph(graph);
+                }
+
+                @Override
+                public void apply(byte op, String source, String target, double weight) {
+                    replay(op, source, target, weight);
+                }
+            });
+            mutationLog = log;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Cannot open mutation log at " + directory);
+            System.out.println(e);
+            return false;
+        } finally {
+            if (modifications() != before) {
+                changed();
+            }
+            writeLock.unlock();
+        }
+        if (fresh) {
+            return compactMutationLog();
+        }
+        System.out.println("Graph successfully recovered!");
+        return true;
+    }
+
+    // Commits outstanding edits and stops logging
+    public boolean disableMutationLog() {
+        MutationLog log;
+        writeLock.lock();
+        try {
+            log = mutationLog;
+            mutationLog = null;
+        } finally {
+            writeLock.unlock();
+        }
+        if (log == null) {
+            return false;
+        }
+        try {
+            log.close();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Cannot write mutation log");
+            System.out.println(e);
+            return false;
+        }
+    }
+
+    // Writes a snapshot of the current graph and drops the log entries it covers
+    public boolean compactMutationLog() {
+        MutationLog log = mutationLog;
+        if (log == null) {
+            return false;
+        }
+        try {
+            compact(log);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Cannot write mutation log");
+            System.out.println(e);
+            return false;
+        }
+    }
+
+    // Only the switch to a new log generation and the copy of the pending edits hold the write
+    // lock; the snapshot of the graph as of that switch is built and written while edits
+    // continue into the new log
+    private void compact(MutationLog log) throws IOException {
+        if (!log.startCompaction()) {
+            return;
+        }
+        try {
+            CompactGraph.Pending pending;
+            long generation;
+            writeLock.lock();
+            try {
+                generation = log.rotate();
+                pending = capture();
+            } finally {
+                writeLock.unlock();
+            }
+            log.writeSnapshot(pending.build(), generation);
+        } finally {
+            log.endCompaction();
+        }
+    }
+
+    // Applies one recovered mutation; records are replayed exactly as they succeeded originally
+    private void replay(byte op, String source, String target, double weight) {
+        switch (op) {
+            case MutationLog.ADD_NODE:
+                graphObject.addVertex(source);
+                break;
+            case MutationLog.REMOVE_NODE:
+                graphObject.removeVertex(source);
+                break;
+            case MutationLog.ADD_EDGE:
+                graphObject.addEdge(source, target);
+                break;
+            case MutationLog.REMOVE_EDGE:
+                graphObject.removeEdge(source, target);
+                break;
+            case MutationLog.SET_WEIGHT:
+                graphObject.setEdgeWeight(graphObject.getEdge(source, target), weight);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mutation log record " + op);
+        }
+    }
+
+    // Appends an applied edit to the log, if enabled; returns its sequence number or 0.
+    // Called with the write lock held, so records are in the order the edits were made
+    private long log(byte op, String source, String target) {
+        return log(op, source, target, Double.NaN);
+    }
+
+    private long log(byte op, String source, String target, double weight) {
+        MutationLog log = mutationLog;
+        return log == null ? 0 : log.append(op, source, target, weight);
+    }
+
+    // Waits until record logged is on disk. Runs after the write lock is released so writers
+    // queued behind it can append and share the fsync; nested calls leave it to the outer one.
+    // Log errors are printed: the edit stays applied in memory, and the next commit retries it
+    private void commitLog(long logged) {
+        MutationLog log = mutationLog;
+        if (logged == 0 || log == null || writeLock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            log.commit(logged);
+        } catch (IOException e) {
+            System.out.println("Cannot write mutation log");
+            System.out.println(e);
+            return;
+        }
+        if (log.compactionDue()) {
+            compactLog(log);
+        }
+    }
+
+    // Bulk loads are logged as a fresh snapshot rather than record by record
+    private void snapshotLog() {
+        MutationLog log = mutationLog;
+        if (log == null || writeLock.isHeldByCurrentThread()) {
+            return;
+        }
+        compactLog(log);
+    }
+
+    // A failed compaction still leaves a log that recovers the graph; a later one tries again
+    private void compactLog(MutationLog log) {
+        try {
+            compact(log);
+        } catch (IOException e) {
+            System.out.println("Cannot compact mutation log");
+            System.out.println(e);
+        }
+    }
+
+    // Writes path + "gen_graph." + format: svg, or any format ImageIO can write (png, jpg, gif, bmp)
+    public boolean outputGraphics(String path, String format) {
+        return outputGraphics(path, format, 1);
+    }
+
+    // Large graphs can be split into tiles x tiles images named gen_graph_<row>_<col>.<format>
+    public boolean outputGraphics(String path, String format, int tiles) {
+        format = format.toLowerCase(Locale.ROOT);
+        boolean svg = format.equals("svg");
+        if (tiles < 1 || svg && tiles != 1) {
+            System.out.println("Invalid tile count " + tiles);
+            return false;
+        }
+        if (!svg && !ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            System.out.println("Unsupported image format " + format);
+            return false;
+        }
+        try {
+            Graph<String, DefaultEdge> graph = readGraph();
+            if (!svg && tiles == 1 && graph.vertexSet().size() <= SMALL_GRAPHICS) {
+                // Small graphs keep the labelled JGraphX drawing
+                JGraphXAdapter<String, DefaultEdge> graphAdapter = new JGraphXAdapter<String, DefaultEdge>(graph);
+                mxIGraphLayout layout = new mxCircleLayout(graphAdapter);
+                layout.execute(graphAdapter.getDefaultParent());
+                BufferedImage image =
+                        mxCellRenderer.createBufferedImage(graphAdapter, null, 2, Color.WHITE, true, null);
+                if (image == null) {
+                    // JGraphX draws nothing for an empty graph
+                    image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+                }
+                if (!ImageIO.write(image, format, new File(path + "gen_graph." + format))) {
+                    throw new IOException("No image writer for format " + format);
+                }
+                return true;
+            }
+            GraphRenderer renderer = new GraphRenderer(layout(), tiles);
+            if (svg) {
+                renderer.writeSvg(path + "gen_graph.svg");
+            } else {
+                renderer.writeTiles(path + "gen_graph", format, tiles);
+            }
+            return true;
         } catch (IOException e) {
             System.out.println("Cannot write file at " + path);
             System.out.println(e);
+            return false;
         }
     }
+
+    // Force-directed layout of the current graph, refined from the previous one after edits
+    ForceLayout layout() {
+        synchronized (layoutLock) {
+            Snapshot snapshot = published();
+            ForceLayout previous = lastLayout;
+            if (previous != null && layoutVersion == snapshot.version()) {
+                return previous;
+            }
+            ForceLayout layout = ForceLayout.of(snapshot.graph(), previous, LAYOUT_SEED);
+            lastLayout = layout;
+            layoutVersion = snapshot.version();
+            return layout;
+        }
+    }
+
     public static void main(String[] args) {
         GraphData graphApi = new GraphData();
         graphApi.parseGraph("src/main/resources/input2.dot");
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Node importance over the int ids of a {@link CsrGraph}, one double per id (0 for holes).
+ * PageRank pulls along the CSR in-edge arrays, so every vertex writes only its own score and
+ * the iteration runs in parallel chunks on the common ForkJoinPool without locks. Chunk sums
+ * are added in chunk order, so results do not depend on the number of threads. Betweenness
+ * likewise splits its sources into a fixed number of chunks, which also caps the per-chunk
+ * scratch arrays at SOURCE_CHUNKS times the vertex count however many cores there are.
+ */
+final class GraphRanking {
+    // Vertices per parallel chunk
+    private static final int CHUNK = 4096;
+    // Parallel chunks of betweenness sources, each with five arrays of one entry per vertex
+    private static final int SOURCE_CHUNKS = 8;
+
+    private GraphRanking() {
+    }
+
+    // PageRank where teleports and dangling vertices spread their rank by teleport, or uniformly
+    // over all vertices when teleport is null. Stops once the L1 change of an iteration is below
+    // tolerance or after maxIterations
+    static Ranking pageRank(CompactGraph graph, double[] teleport, double damping, double tolerance, int maxIterations) {
+        CsrGraph csr = graph.freeze();
+        int n = csr.size();
+        if (teleport == null) {
+            teleport = new double[n];
+            for (int v = 0; v < n; v++) {
+                if (csr.isLive(v)) {
+                    teleport[v] = 1.0 / csr.vertexCount();
+                }
+            }
+        }
+        double[] p = teleport;
+        double[] rank = p.clone();
+        double[] next = new double[n];
+        double[] share = new double[n];
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        double[] sums = new double[chunks];
+        int iterations = 0;
+        boolean converged = false;
+        while (iterations < maxIterations && !converged) {
+            double[] current = rank;
+            // What each vertex passes along one out-edge; dangling vertices teleport instead
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                double dangling = 0;
+                for (int u = chunk * CHUNK; u < Math.min(n, (chunk + 1) * CHUNK); u++) {
+                    int degree = csr.outDegree(u);
+                    if (degree > 0) {
+                        share[u] = current[u] / degree;
+                    } else {
+                        share[u] = 0;
+                        dangling += current[u];
+                    }
+                }
+                sums[chunk] = dangling;
+            });
+            double teleported = 1 - damping + damping * sum(sums);
+            double[] updated = next;
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                double change = 0;
+                for (int v = chunk * CHUNK; v < Math.min(n, (chunk + 1) * CHUNK); v++) {
+                    double pulled = 0;
+                    for (int q = csr.inOffsets[v]; q < csr.inOffsets[v + 1]; q++) {
+                        pulled += share[csr.inTargets[q]];
+                    }
+                    updated[v] = csr.isLive(v) ? teleported * p[v] + damping * pulled : 0;
+                    change += Math.abs(updated[v] - current[v]);
+                }
+                sums[chunk] = change;
+            });
+            next = rank;
+            rank = updated;
+            iterations++;
+            converged = sum(sums) < tolerance;
+        }
+        return new Ranking(graph, rank, iterations, converged);
+    }
+
+    // Brandes betweenness along edge directions, accumulated from samples random sources and
+    // scaled to estimate the sum over all sources; exact when samples covers every vertex
+    static Ranking betweenness(CompactGraph graph, int samples, long seed) {
+        CsrGraph csr = graph.freeze();
+        int n = csr.size();
+        int[] live = IntStream.range(0, n).filter(csr::isLive).toArray();
+        int k = Math.min(samples, live.length);
+        // Partial Fisher-Yates shuffle picks k distinct sources
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(live.length - i);
+            int t = live[i];
+            live[i] = live[j];
+            live[j] = t;
+        }
+        // Chunk c takes the sources live[c * k / chunks] up to live[(c + 1) * k / chunks]
+        int chunks = Math.max(1, Math.min(k, SOURCE_CHUNKS));
+        double[][] partial = new double[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            double[] centrality = new double[n];
+            int[] distance = new int[n];
+            double[] paths = new double[n];
+            double[] dependency = new double[n];
+            int[] order = new int[n];
+            Arrays.fill(distance, -1);
+            int end = (int) ((long) (chunk + 1) * k / chunks);
+            for (int i = (int) ((long) chunk * k / chunks); i < end; i++) {
+                int source = live[i];
+                int count = 0;
+                distance[source] = 0;
+                paths[source] = 1;
+                order[count++] = source;
+                for (int head = 0; head < count; head++) {
+                    int v = order[head];
+                    for (int p = csr.outOffsets[v]; p < csr.outOffsets[v + 1]; p++) {
+                        int w = csr.outTargets[p];
+                        if (distance[w] < 0) {
+                            distance[w] = distance[v] + 1;
+                            order[count++] = w;
+                        }
+                        if (distance[w] == distance[v] + 1) {
+                            paths[w] += paths[v];
+                        }
+                    }
+                }
+                // Dependencies flow back from the farthest vertices along shortest-path
+                // predecessors; order[0] is the source itself
+                for (int j = count - 1; j > 0; j--) {
+                    int w = order[j];
+                    for (int q = csr.inOffsets[w]; q < csr.inOffsets[w + 1]; q++) {
+                        int v = csr.inTargets[q];
+                        if (distance[v] == distance[w] - 1) {
+                            dependency[v] += paths[v] / paths[w] * (1 + dependency[w]);
+                        }
+                    }
+                    centrality[w] += dependency[w];
+                }
+                for (int j = 0; j < count; j++) {
+                    int v = order[j];
+                    distance[v] = -1;
+                    paths[v] = 0;
+                    dependency[v] = 0;
+                }
+            }
+            partial[chunk] = centrality;
+        });
+        double[] centrality = new double[n];
+        double scale = k == 0 ? 0 : (double) live.length / k;
+        for (double[] part : partial) {
+            for (int v = 0; v < n; v++) {
+                centrality[v] += part[v];
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            centrality[v] *= scale;
+        }
+        return new Ranking(graph, centrality, k, k == live.length);
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,190 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Draws a {@link ForceLayout} without building a scene graph: SVG is streamed element by
+ * element, and raster output is split into tiles of at most MAX_SIDE pixels that are drawn in
+ * parallel, so memory stays bounded by one tile per thread whatever the graph size.
+ */
+final class GraphRenderer {
+    static final int MIN_SIDE = 1024;
+    static final int MAX_SIDE = 8192;
+    // Pixels per unit of layout distance before clamping
+    private static final int SCALE = 8;
+    private static final int MARGIN = 16;
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color EDGE = new Color(0x80, 0x80, 0x80, 0x60);
+    private static final Color NODE = new Color(0x1f, 0x5f, 0x9f);
+
+    private final ForceLayout layout;
+    private final CsrGraph csr;
+    // Side of the whole picture in pixels, and the layout to pixel transform
+    private final int side;
+    private final double scale;
+    private final double minX;
+    private final double minY;
+    private final double radius;
+
+    GraphRenderer(ForceLayout layout, int tiles) {
+        this.layout = layout;
+        csr = layout.graph.freeze();
+        int n = Math.max(1, csr.vertexCount());
+        side = Math.max(MIN_SIDE, Math.min(MAX_SIDE, (int) (Math.sqrt(n) * SCALE))) * tiles;
+        double lowX = Double.MAX_VALUE;
+        double lowY = Double.MAX_VALUE;
+        double highX = -Double.MAX_VALUE;
+        double highY = -Double.MAX_VALUE;
+        for (int v = 0; v < csr.size(); v++) {
+            if (csr.isLive(v)) {
+                lowX = Math.min(lowX, layout.x[v]);
+                lowY = Math.min(lowY, layout.y[v]);
+                highX = Math.max(highX, layout.x[v]);
+                highY = Math.max(highY, layout.y[v]);
+            }
+        }
+        if (lowX > highX) {
+            lowX = lowY = 0;
+            highX = highY = 1;
+        }
+        minX = lowX;
+        minY = lowY;
+        scale = (side - 2.0 * MARGIN) / Math.max(1e-9, Math.max(highX - lowX, highY - lowY));
+        // Dots shrink as the picture gets denser, but stay visible
+        radius = Math.max(1, Math.min(6, 0.25 * scale));
+    }
+
+    private double px(int v) {
+        return MARGIN + (layout.x[v] - minX) * scale;
+    }
+
+    private double py(int v) {
+        return MARGIN + (layout.y[v] - minY) * scale;
+    }
+
+    void writeSvg(String file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            out.write(String.format(Locale.ROOT,
+                    "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\">%n", side, side));
+            out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+            out.write("<g stroke=\"gray\" stroke-opacity=\"0.4\">\n");
+            for (int u = 0; u < csr.size(); u++) {
+                for (int p = csr.outOffsets[u]; p < csr.outOffsets[u + 1]; p++) {
+                    int v = csr.outTargets[p];
+                    out.write(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%.1f\" x2=\"%.1f\" y2=\"%.1f\"/>%n",
+                            px(u), py(u), px(v), py(v)));
+                }
+            }
+            out.write("</g>\n<g fill=\"#1f5f9f\">\n");
+            for (int v = 0; v < csr.size(); v++) {
+                if (csr.isLive(v)) {
+                    out.write(String.format(Locale.ROOT, "<circle cx=\"%.1f\" cy=\"%.1f\" r=\"%.1f\"><title>%s</title></circle>%n",
+                            px(v), py(v), radius, escape(csr.label(v))));
+                }
+            }
+            out.write("</g>\n</svg>\n");
+        }
+    }
+
+    // Writes tiles x tiles images named <prefix>_<row>_<col>.<format>, or <prefix>.<format> for one tile
+    void writeTiles(String prefix, String format, int tiles) throws IOException {
+        int tileSide = side / tiles;
+        IOException[] failure = new IOException[1];
+        IntStream.range(0, tiles * tiles).parallel().forEach(t -> {
+            int row = t / tiles;
+            int col = t % tiles;
+            String name = tiles == 1 ? prefix + "." + format : prefix + "_" + row + "_" + col + "." + format;
+            try {
+                // No alpha channel, so formats without one (jpg, bmp) can be written too
+                BufferedImage image = drawTile(col * tileSide, row * tileSide, tileSide);
+                if (!ImageIO.write(image, format, new File(name))) {
+                    throw new IOException("No image writer for format " + format);
+                }
+            } catch (IOException e) {
+                synchronized (failure) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private BufferedImage drawTile(int left, int top, int tileSide) {
+        BufferedImage image = new BufferedImage(tileSide, tileSide, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, tileSide, tileSide);
+            g.translate(-left, -top);
+            // Only shapes whose bounding box touches the tile are drawn
+            double lowX = left - radius;
+            double lowY = top - radius;
+            double highX = left + tileSide + radius;
+            double highY = top + tileSide + radius;
+            g.setColor(EDGE);
+            for (int u = 0; u < csr.size(); u++) {
+                double ux = px(u);
+                double uy = py(u);
+                for (int p = csr.outOffsets[u]; p < csr.outOffsets[u + 1]; p++) {
+                    int v = csr.outTargets[p];
+                    double vx = px(v);
+                    double vy = py(v);
+                    if (Math.max(ux, vx) >= lowX && Math.min(ux, vx) <= highX
+                            && Math.max(uy, vy) >= lowY && Math.min(uy, vy) <= highY) {
+                        g.drawLine((int) ux, (int) uy, (int) vx, (int) vy);
+                    }
+                }
+            }
+            g.setColor(NODE);
+            int diameter = (int) Math.ceil(2 * radius);
+            for (int v = 0; v < csr.size(); v++) {
+                if (csr.isLive(v)) {
+                    double x = px(v);
+                    double y = py(v);
+                    if (x >= lowX && x <= highX && y >= lowY && y <= highY) {
+                        g.fillOval((int) (x - radius), (int) (y - radius), diameter, diameter);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
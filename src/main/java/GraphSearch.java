@@ -10,6 +10,10 @@ abstract class GraphSearchAlgorithm {
     protected String source;
     protected String destination;
     protected Graph graphObject;
+    // Work counters reported through SearchMetrics
+    protected long expanded;
+    protected long scanned;
+    protected int peakFrontier;
 
     public GraphSearchAlgorithm(String src, String dst, Graph graph) {
         source = src;
@@ -30,6 +34,33 @@ abstract class GraphSearchAlgorithm {
     // Abstract methods to be implemented by subclasses
     protected abstract void selectAlgorithm();
     protected abstract void executeAlgorithm();
+
+    // Counts one expanded node, the edges it scanned and the frontier size after it
+    protected void expanded(int edges, int frontier) {
+        expanded++;
+        scanned += edges;
+        if (frontier > peakFrontier) {
+            peakFrontier = frontier;
+        }
+    }
+
+    public long nodesExpanded() {
+        return expanded;
+    }
+
+    public long edgesScanned() {
+        return scanned;
+    }
+
+    public int peakFrontier() {
+        return peakFrontier;
+    }
+
+    // An interrupt abandons the search, e.g. when searchAll cancels or times out a query
+    protected boolean cancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
     public Path getPath() {
         String node = destination;
         path.add(node);
@@ -57,7 +88,6 @@ class BFS extends GraphSearchAlgorithm implements SearchStrategy {
 
     @Override
     public void selectAlgorithm() {
-        System.out.println("Using BFS");
         visited.put(source, true);
         queue.add(source);
     }
@@ -65,7 +95,7 @@ class BFS extends GraphSearchAlgorithm implements SearchStrategy {
     public void executeAlgorithm() {
         while (!queue.isEmpty()) {
             String src = queue.poll();
-            if (src.equals(destination)) {
+            if (src.equals(destination) || cancelled()) {
                 break;
             }
             List<String> successors = Graphs.neighborListOf(graphObject, src);
@@ -76,6 +106,7 @@ class BFS extends GraphSearchAlgorithm implements SearchStrategy {
                     queue.add(node);
                 }
             }
+            expanded(successors.size(), queue.size());
         }
     }
 }
@@ -90,7 +121,6 @@ class DFS extends GraphSearchAlgorithm implements SearchStrategy {
 
     @Override
     public void selectAlgorithm() {
-        System.out.println("Using DFS");
         visited.put(source, true);
         stack.push(source);
     }
@@ -99,7 +129,7 @@ class DFS extends GraphSearchAlgorithm implements SearchStrategy {
     public void executeAlgorithm() {
         while (!stack.isEmpty()) {
             String src = stack.pop();
-            if (src.equals(destination)) {
+            if (src.equals(destination) || cancelled()) {
                 break;
             }
             List<String> successors = Graphs.neighborListOf(graphObject, src);
@@ -110,21 +140,32 @@ class DFS extends GraphSearchAlgorithm implements SearchStrategy {
                     stack.push(node);
                 }
             }
+            expanded(successors.size(), stack.size());
         }
     }
 }
 
 class RWS extends GraphSearchAlgorithm implements SearchStrategy {
     private List<String> arr;
+    private final SplittableRandom random;
 
     public RWS(String src, String dst, Graph graph) {
+        this(src, dst, graph, new SplittableRandom());
+    }
+
+    // The same seed on the same graph walks the same way and finds the same path
+    public RWS(String src, String dst, Graph graph, long seed) {
+        this(src, dst, graph, new SplittableRandom(seed));
+    }
+
+    private RWS(String src, String dst, Graph graph, SplittableRandom random) {
         super(src, dst, graph);
         arr = new ArrayList<>();
+        this.random = random;
     }
 
     @Override
     public void selectAlgorithm() {
-        System.out.println("Using Random Walk Search (RWS)");
         visited.put(source, true);
         arr.add(source);
     }
@@ -132,25 +173,259 @@ class RWS extends GraphSearchAlgorithm implements SearchStrategy {
     @Override
     public void executeAlgorithm() {
         while (!arr.isEmpty()) {
-            String src = arr.get((int) (Math.random() * arr.size()));
-            arr.remove(src);
-            System.out.println("Visiting "+src);
-            if (src.equals(destination)) {
+            // Swap-remove a random frontier entry; the random pick already orders successors
+            int pick = random.nextInt(arr.size());
+            String src = arr.get(pick);
+            arr.set(pick, arr.get(arr.size() - 1));
+            arr.remove(arr.size() - 1);
+            if (src.equals(destination) || cancelled()) {
                 break;
             }
-            List<String> successors = Graphs.successorListOf(graphObject, src);
-            if (successors.isEmpty()) {
-                arr.remove(src);
-                continue;
-            }
-            Collections.shuffle(successors);
-            for (String node : successors) {
+            Set<Object> edges = graphObject.outgoingEdgesOf(src);
+            for (Object e : edges) {
+                String node = (String) graphObject.getEdgeTarget(e);
                 if (visited.get(node) == null) {
                     visited.put(node, true);
                     parent.put(node, src);
                     arr.add(node);
                 }
             }
+            expanded(edges.size(), arr.size());
+        }
+    }
+}
+
+class BIBFS extends GraphSearchAlgorithm implements SearchStrategy {
+    // Backward search from the destination over predecessors
+    private HashMap<String, Boolean> backwardVisited;
+    private HashMap<String, String> next;
+    private List<String> forwardFrontier;
+    private List<String> backwardFrontier;
+    private String meeting;
+
+    public BIBFS(String src, String dst, Graph graph) {
+        super(src, dst, graph);
+        backwardVisited = new HashMap<>();
+        next = new HashMap<>();
+        forwardFrontier = new ArrayList<>();
+        backwardFrontier = new ArrayList<>();
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        visited.put(source, true);
+        backwardVisited.put(destination, true);
+        forwardFrontier.add(source);
+        backwardFrontier.add(destination);
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        if (!graphObject.containsVertex(source) || !graphObject.containsVertex(destination)) {
+            return;
+        }
+        if (source.equals(destination)) {
+            meeting = source;
+            return;
+        }
+        // Always grow the smaller frontier by one full level
+        while (meeting == null && !forwardFrontier.isEmpty() && !backwardFrontier.isEmpty() && !cancelled()) {
+            if (forwardFrontier.size() <= backwardFrontier.size()) {
+                forwardFrontier = expand(forwardFrontier, true);
+            } else {
+                backwardFrontier = expand(backwardFrontier, false);
+            }
+        }
+    }
+
+    private List<String> expand(List<String> frontier, boolean forward) {
+        List<String> nextLevel = new ArrayList<>();
+        HashMap<String, Boolean> seen = forward ? visited : backwardVisited;
+        HashMap<String, Boolean> other = forward ? backwardVisited : visited;
+        HashMap<String, String> tree = forward ? parent : next;
+        for (String src : frontier) {
+            List<String> neighbors = forward
+                    ? Graphs.successorListOf(graphObject, src)
+                    : Graphs.predecessorListOf(graphObject, src);
+            int frontierSize = forwardFrontier.size() + backwardFrontier.size() + nextLevel.size();
+            for (String node : neighbors) {
+                if (seen.get(node) == null) {
+                    seen.put(node, true);
+                    tree.put(node, src);
+                    // The first node both searches have seen lies on a shortest path
+                    if (other.get(node) != null) {
+                        meeting = node;
+                        expanded(neighbors.size(), frontierSize + 1);
+                        return nextLevel;
+                    }
+                    nextLevel.add(node);
+                    frontierSize++;
+                }
+            }
+            expanded(neighbors.size(), frontierSize);
         }
+        return nextLevel;
+    }
+
+    @Override
+    public Path getPath() {
+        if (meeting == null) {
+            return null;
+        }
+        // Path lists nodes from destination back to source, like the other strategies
+        List<String> tail = new ArrayList<>();
+        for (String node = meeting; !node.equals(destination); ) {
+            node = next.get(node);
+            tail.add(node);
+        }
+        Collections.reverse(tail);
+        for (String node : tail) {
+            path.add(node);
+        }
+        for (String node = meeting; ; node = parent.get(node)) {
+            path.add(node);
+            if (node.equals(source)) {
+                return path;
+            }
+        }
+    }
+}
+
+/**
+ * Multi-source reachability along edge directions over a {@link CsrGraph}, after Beamer's
+ * direction-optimizing BFS. Small frontiers expand top-down from a bitmap; once the frontier's
+ * out-edges outweigh the unexplored ones, levels run bottom-up instead, with each unvisited
+ * vertex looking for a predecessor in the frontier and stopping at the first one it finds.
+ */
+class MultiSourceBFS {
+    // Switching thresholds from Beamer et al.: go bottom-up when frontier edges exceed
+    // unexplored edges / ALPHA, back to top-down when the frontier shrinks below n / BETA
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    private final CsrGraph graph;
+    private final int[] distance;
+    private final long[] visited;
+    private long[] frontier;
+    private long[] next;
+    private int nextCount;
+    private long nextEdges;
+    private int reached;
+    private int depth;
+
+    public MultiSourceBFS(CsrGraph graph) {
+        this.graph = graph;
+        int words = (graph.size() + 63) >>> 6;
+        distance = new int[graph.size()];
+        Arrays.fill(distance, -1);
+        visited = new long[words];
+        frontier = new long[words];
+        next = new long[words];
+    }
+
+    // Hop distance of every id from the nearest root, -1 where unreachable
+    public int[] search(int[] roots) {
+        int n = graph.size();
+        int frontierCount = 0;
+        long frontierEdges = 0;
+        for (int root : roots) {
+            if (distance[root] < 0) {
+                distance[root] = 0;
+                visited[root >>> 6] |= 1L << root;
+                frontier[root >>> 6] |= 1L << root;
+                frontierCount++;
+                frontierEdges += graph.outDegree(root);
+            }
+        }
+        reached = frontierCount;
+        long unexplored = graph.edgeCount() - frontierEdges;
+        boolean bottomUp = false;
+        int previousCount = 0;
+        int level = 0;
+        while (frontierCount > 0) {
+            if (bottomUp) {
+                bottomUp = frontierCount >= n / BETA || frontierCount >= previousCount;
+            } else {
+                bottomUp = frontierEdges > unexplored / ALPHA;
+            }
+            level++;
+            nextCount = 0;
+            nextEdges = 0;
+            Arrays.fill(next, 0);
+            if (bottomUp) {
+                bottomUpStep(level);
+            } else {
+                topDownStep(level);
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+            previousCount = frontierCount;
+            frontierCount = nextCount;
+            frontierEdges = nextEdges;
+            unexplored -= nextEdges;
+            reached += nextCount;
+            if (nextCount > 0) {
+                depth = level;
+            }
+        }
+        return distance;
+    }
+
+    private void reach(int v, int level) {
+        visited[v >>> 6] |= 1L << v;
+        next[v >>> 6] |= 1L << v;
+        distance[v] = level;
+        nextCount++;
+        nextEdges += graph.outDegree(v);
+    }
+
+    private void topDownStep(int level) {
+        int[] offsets = graph.outOffsets;
+        int[] targets = graph.outTargets;
+        for (int w = 0; w < frontier.length; w++) {
+            long bits = frontier[w];
+            while (bits != 0) {
+                int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int p = offsets[u]; p < offsets[u + 1]; p++) {
+                    int v = targets[p];
+                    if ((visited[v >>> 6] & (1L << v)) == 0) {
+                        reach(v, level);
+                    }
+                }
+            }
+        }
+    }
+
+    private void bottomUpStep(int level) {
+        int[] offsets = graph.inOffsets;
+        int[] sources = graph.inTargets;
+        int n = graph.size();
+        for (int w = 0; w < visited.length; w++) {
+            long bits = ~visited[w];
+            if (w == visited.length - 1 && (n & 63) != 0) {
+                bits &= (1L << n) - 1;
+            }
+            while (bits != 0) {
+                int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                    int u = sources[p];
+                    if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                        reach(v, level);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public int reached() {
+        return reached;
+    }
+
+    public int depth() {
+        return depth;
     }
 }
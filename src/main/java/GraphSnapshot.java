@@ -0,0 +1,617 @@
+import org.jgrapht.Graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned binary image of a {@link CsrGraph}, little-endian throughout:
+ * <pre>
+ * magic "GRAPHSNP" | int version | int vertexCount n | int edgeCount m | int flags
+ * long labelBytes | int[n + 1] labelOffsets | UTF-8 labels, padded to 4 bytes
+ * int[t] labelTable | int[n + 1] outOffsets | int[m] outTargets | int[n + 1] inOffsets | int[m] inTargets
+ * double[m] outWeights, only if flags has WEIGHTED
+ * long CRC32C of everything before it
+ * </pre>
+ * The label table holds id + 1 at the slot of each label's hash, probing linearly, with 0 for
+ * an empty slot; t is the power of two from tableSize(n). It lets a mapped file find ids
+ * without decoding the labels.
+ * Saving writes a temporary file, forces it to disk and renames it over the target, so the
+ * target always holds a complete snapshot, and a file mapped by a reader is never overwritten.
+ * read verifies the file and bulk-copies the arrays onto the heap; {@link Mapped} serves
+ * searches from the file as it lies, and {@link OnDisk} reads it a value at a time for graphs
+ * that do not fit in the heap. No text is parsed on startup either way.
+ * Version 1 files, which predate weights, and version 2 files, which predate the label table,
+ * still load.
+ */
+final class GraphSnapshot {
+    private static final byte[] MAGIC = "GRAPHSNP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 3;
+    private static final int WEIGHTED = 1;
+    private static final int HEADER_BYTES = 32;
+    // Graphs whose label table would need more slots are written without one
+    private static final int MAX_TABLE_SLOTS = 1 << 28;
+    // Files are mapped a window at a time to stay under the 2 GB mapping limit
+    private static final int WINDOW = 1 << 30;
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private GraphSnapshot() {
+    }
+
+    static void write(CsrGraph graph, String path) throws IOException {
+        CsrGraph csr = graph.withoutHoles();
+        int n = csr.size();
+        byte[][] encoded = new byte[n][];
+        int[] labelOffsets = new int[n + 1];
+        long labelBytes = 0;
+        for (int v = 0; v < n; v++) {
+            encoded[v] = csr.label(v).getBytes(StandardCharsets.UTF_8);
+            labelBytes += encoded[v].length;
+            if (labelBytes > Integer.MAX_VALUE) {
+                throw new IOException("Label dictionary exceeds 2 GB");
+            }
+            labelOffsets[v + 1] = (int) labelBytes;
+        }
+
+        // Written beside the target and renamed over it once on disk, so a crash mid-save
+        // leaves the previous snapshot intact
+        java.nio.file.Path target = Paths.get(path).toAbsolutePath();
+        java.nio.file.Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.bytes(MAGIC, 0, MAGIC.length);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(csr.edgeCount());
+            out.putInt(csr.isWeighted() ? WEIGHTED : 0);
+            out.putLong(labelBytes);
+            out.ints(labelOffsets);
+            for (byte[] label : encoded) {
+                out.bytes(label, 0, label.length);
+            }
+            out.bytes(new byte[4], 0, (int) ((4 - labelBytes % 4) % 4));
+            out.ints(labelTable(csr));
+            out.ints(csr.outOffsets);
+            out.ints(csr.outTargets);
+            out.ints(csr.inOffsets);
+            out.ints(csr.inTargets);
+            if (csr.isWeighted()) {
+                out.doubles(csr.outWeights);
+            }
+            out.finish();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the rename itself is still atomic
+        }
+    }
+
+    // Slots of the label table for n labels: a power of two at least twice n, or none once that
+    // would pass MAX_TABLE_SLOTS
+    private static int tableSize(int n) {
+        long slots = (long) Integer.highestOneBit(Math.max(n, 1)) << 2;
+        return slots <= MAX_TABLE_SLOTS ? (int) slots : 0;
+    }
+
+    // Table slot a label's probe starts at; the writer and the readers must agree on it
+    private static int slot(String label, int slots) {
+        int hash = label.hashCode();
+        return (hash ^ (hash >>> 16)) & (slots - 1);
+    }
+
+    private static int[] labelTable(CsrGraph csr) {
+        int[] table = new int[tableSize(csr.size())];
+        if (table.length == 0) {
+            return table;
+        }
+        for (int v = 0; v < csr.size(); v++) {
+            int slot = slot(csr.label(v), table.length);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = v + 1;
+        }
+        return table;
+    }
+
+    /**
+     * Where each section of a snapshot starts, from its header. Positions are checked against
+     * the file size only, so this reads nothing beyond the header.
+     */
+    private record Layout(int version, int n, int m, boolean weighted, long labelBytes, int tableSlots,
+                          long labelOffsetsAt, long labelsAt, long tableAt, long outOffsetsAt,
+                          long outTargetsAt, long inOffsetsAt, long inTargetsAt, long weightsAt) {
+
+        static Layout of(FileChannel channel, String path) throws IOException {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8) {
+                throw new IOException("Not a graph snapshot: " + path);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a graph snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int flags = header.getInt();
+            long labelBytes = header.getLong();
+            if (n < 0 || m < 0 || labelBytes < 0 || labelBytes > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt graph snapshot header: " + path);
+            }
+            boolean weighted = (flags & WEIGHTED) != 0;
+            int tableSlots = version >= 3 ? tableSize(n) : 0;
+            long labelOffsetsAt = HEADER_BYTES;
+            long labelsAt = labelOffsetsAt + 4L * (n + 1);
+            long tableAt = labelsAt + labelBytes + (4 - labelBytes % 4) % 4;
+            long outOffsetsAt = tableAt + 4L * tableSlots;
+            long outTargetsAt = outOffsetsAt + 4L * (n + 1);
+            long inOffsetsAt = outTargetsAt + 4L * m;
+            long inTargetsAt = inOffsetsAt + 4L * (n + 1);
+            long weightsAt = inTargetsAt + 4L * m;
+            long end = weightsAt + (weighted ? 8L * m : 0) + 8;
+            if (end > size) {
+                throw new IOException("Truncated graph snapshot: " + path);
+            }
+            if (end < size) {
+                throw new IOException("Corrupt graph snapshot header: " + path);
+            }
+            return new Layout(version, n, m, weighted, labelBytes, tableSlots, labelOffsetsAt, labelsAt,
+                    tableAt, outOffsetsAt, outTargetsAt, inOffsetsAt, inTargetsAt, weightsAt);
+        }
+    }
+
+    static CsrGraph read(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            Layout layout = Layout.of(channel, path);
+            verifyChecksum(channel, channel.size());
+            int n = layout.n();
+            int m = layout.m();
+            int[] labelOffsets = readInts(channel, layout.labelOffsetsAt(), n + 1);
+            byte[] blob = new byte[(int) layout.labelBytes()];
+            map(channel, layout.labelsAt(), blob.length).get(blob);
+            int[] outOffsets = readInts(channel, layout.outOffsetsAt(), n + 1);
+            int[] outTargets = readInts(channel, layout.outTargetsAt(), m);
+            int[] inOffsets = readInts(channel, layout.inOffsetsAt(), n + 1);
+            int[] inTargets = readInts(channel, layout.inTargetsAt(), m);
+            double[] outWeights = layout.weighted() ? readDoubles(channel, layout.weightsAt(), m) : null;
+            return new CsrGraph(labels(blob, labelOffsets, n), outOffsets, outTargets, inOffsets, inTargets,
+                    outWeights, n);
+        }
+    }
+
+    private static String[] labels(byte[] blob, int[] labelOffsets, int n) {
+        String[] labels = new String[n];
+        for (int v = 0; v < n; v++) {
+            labels[v] = new String(blob, labelOffsets[v], labelOffsets[v + 1] - labelOffsets[v], StandardCharsets.UTF_8);
+        }
+        return labels;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, int length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static int[] readInts(FileChannel channel, long offset, int count) throws IOException {
+        int[] values = new int[count];
+        int done = 0;
+        while (done < count) {
+            int chunk = Math.min(count - done, WINDOW / 4);
+            IntBuffer ints = map(channel, offset + 4L * done, chunk * 4).asIntBuffer();
+            ints.get(values, done, chunk);
+            done += chunk;
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(FileChannel channel, long offset, int count) throws IOException {
+        double[] values = new double[count];
+        int done = 0;
+        while (done < count) {
+            int chunk = Math.min(count - done, WINDOW / 8);
+            map(channel, offset + 8L * done, chunk * 8).asDoubleBuffer().get(values, done, chunk);
+            done += chunk;
+        }
+        return values;
+    }
+
+    private static void verifyChecksum(FileChannel channel, long size) throws IOException {
+        CRC32C crc = new CRC32C();
+        long end = size - 8;
+        for (long offset = 0; offset < end; offset += WINDOW) {
+            crc.update(map(channel, offset, (int) Math.min(WINDOW, end - offset)));
+        }
+        long stored = map(channel, end, 8).getLong();
+        if (stored != crc.getValue()) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+    }
+
+    /**
+     * A snapshot read where it lies: the file is mapped a window at a time and values are
+     * fetched on demand, so only the pages touched are read and none of it is on the heap.
+     * The checksum is not verified, since that alone would read the whole file once.
+     */
+    static final class OnDisk implements Closeable {
+        final int vertexCount;
+        final int edgeCount;
+        private final FileChannel channel;
+        private final long size;
+        private final MappedByteBuffer[] windows;
+        private final Layout layout;
+        // Bytes of the file fetched so far
+        private long bytesRead;
+
+        private OnDisk(FileChannel channel, String path) throws IOException {
+            this.channel = channel;
+            size = channel.size();
+            layout = Layout.of(channel, path);
+            windows = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+            vertexCount = layout.n();
+            edgeCount = layout.m();
+        }
+
+        static OnDisk open(String path) throws IOException {
+            FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            try {
+                return new OnDisk(channel, path);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private ByteBuffer window(long position) throws IOException {
+            int w = (int) (position / WINDOW);
+            if (windows[w] == null) {
+                long start = (long) w * WINDOW;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+                windows[w].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return windows[w];
+        }
+
+        private byte getByte(long position) throws IOException {
+            bytesRead++;
+            return window(position).get((int) (position % WINDOW));
+        }
+
+        // Ints are 4-byte aligned and windows are a multiple of 4 bytes, so none spans two
+        private int getInt(long position) throws IOException {
+            bytesRead += 4;
+            return window(position).getInt((int) (position % WINDOW));
+        }
+
+        // Start of v's out-edges (or in-edges) in the targets array; v = vertexCount gives the end
+        int offset(boolean out, int v) throws IOException {
+            return getInt((out ? layout.outOffsetsAt() : layout.inOffsetsAt()) + 4L * v);
+        }
+
+        int target(boolean out, int p) throws IOException {
+            return getInt((out ? layout.outTargetsAt() : layout.inTargetsAt()) + 4L * p);
+        }
+
+        String label(int v) throws IOException {
+            int start = getInt(layout.labelOffsetsAt() + 4L * v);
+            byte[] bytes = new byte[getInt(layout.labelOffsetsAt() + 4L * (v + 1)) - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = getByte(layout.labelsAt() + start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Id of label through the label table, or by one pass over the dictionary in files
+        // without one; -1 if it is not there
+        int idOf(String label) throws IOException {
+            byte[] wanted = label.getBytes(StandardCharsets.UTF_8);
+            int slots = layout.tableSlots();
+            if (slots > 0) {
+                int slot = slot(label, slots);
+                for (int probes = 0; probes < slots; probes++) {
+                    int v = getInt(layout.tableAt() + 4L * slot) - 1;
+                    if (v < 0) {
+                        break;
+                    }
+                    if (matches(v, wanted)) {
+                        return v;
+                    }
+                    slot = (slot + 1) & (slots - 1);
+                }
+                return -1;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                if (matches(v, wanted)) {
+                    return v;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(int v, byte[] wanted) throws IOException {
+            int start = getInt(layout.labelOffsetsAt() + 4L * v);
+            if (getInt(layout.labelOffsetsAt() + 4L * (v + 1)) - start != wanted.length) {
+                return false;
+            }
+            for (int i = 0; i < wanted.length; i++) {
+                if (getByte(layout.labelsAt() + start + i) != wanted[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long bytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A snapshot searched where it lies. Opening maps each section once and checks the header,
+     * the file size and the ends of the offset arrays, which costs the same for any graph size;
+     * labels are decoded, and looked up through the label table, only as queries touch them.
+     * Without verify the checksum is not read, since that alone reads the whole file, so a
+     * damaged body shows up as wrong paths or an IndexOutOfBoundsException from a search
+     * rather than at open. Mappings outlive the channel, and saves rename a new file over the
+     * old one, so the mapped data stays valid until the last reader drops it.
+     */
+    static final class Mapped implements Adjacency {
+        private final int n;
+        private final int m;
+        private final IntBuffer labelOffsets;
+        private final ByteBuffer labels;
+        private final IntBuffer table;
+        private final IntBuffer outOffsets;
+        private final IntBuffer outTargets;
+        private final IntBuffer inOffsets;
+        private final IntBuffer inTargets;
+        private final DoubleBuffer outWeights;
+
+        private Mapped(FileChannel channel, Layout layout) throws IOException {
+            n = layout.n();
+            m = layout.m();
+            labelOffsets = map(channel, layout.labelOffsetsAt(), 4 * (n + 1)).asIntBuffer();
+            labels = map(channel, layout.labelsAt(), (int) layout.labelBytes());
+            table = map(channel, layout.tableAt(), 4 * layout.tableSlots()).asIntBuffer();
+            outOffsets = map(channel, layout.outOffsetsAt(), 4 * (n + 1)).asIntBuffer();
+            outTargets = map(channel, layout.outTargetsAt(), 4 * m).asIntBuffer();
+            inOffsets = map(channel, layout.inOffsetsAt(), 4 * (n + 1)).asIntBuffer();
+            inTargets = map(channel, layout.inTargetsAt(), 4 * m).asIntBuffer();
+            outWeights = layout.weighted() ? map(channel, layout.weightsAt(), 8 * m).asDoubleBuffer() : null;
+        }
+
+        // Null if the file has no label table, being older or too big for one, or if a section
+        // does not fit in one mapping; read copies such files instead
+        static Mapped open(String path, boolean verify) throws IOException {
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                Layout layout = Layout.of(channel, path);
+                long largest = Math.max(4L * Math.max(layout.n() + 1, layout.m()), layout.labelBytes());
+                if (layout.tableSlots() == 0 || largest > Integer.MAX_VALUE
+                        || layout.weighted() && 8L * layout.m() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                if (verify) {
+                    verifyChecksum(channel, channel.size());
+                }
+                Mapped mapped = new Mapped(channel, layout);
+                if (mapped.labelOffsets.get(0) != 0 || mapped.labelOffsets.get(mapped.n) != layout.labelBytes()
+                        || mapped.outOffsets.get(0) != 0 || mapped.outOffsets.get(mapped.n) != mapped.m
+                        || mapped.inOffsets.get(0) != 0 || mapped.inOffsets.get(mapped.n) != mapped.m) {
+                    throw new IOException("Corrupt graph snapshot: " + path);
+                }
+                return mapped;
+            }
+        }
+
+        @Override
+        public int size() {
+            return n;
+        }
+
+        int edgeCount() {
+            return m;
+        }
+
+        @Override
+        public String label(int v) {
+            int start = labelOffsets.get(v);
+            byte[] bytes = new byte[labelOffsets.get(v + 1) - start];
+            labels.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Id of label, or -1 if it is not there
+        int idOf(String label) {
+            if (label == null) {
+                return -1;
+            }
+            byte[] wanted = label.getBytes(StandardCharsets.UTF_8);
+            int slots = table.limit();
+            int slot = slot(label, slots);
+            for (int probes = 0; probes < slots; probes++) {
+                int v = table.get(slot) - 1;
+                if (v < 0) {
+                    return -1;
+                }
+                if (matches(v, wanted)) {
+                    return v;
+                }
+                slot = (slot + 1) & (slots - 1);
+            }
+            return -1;
+        }
+
+        private boolean matches(int v, byte[] wanted) {
+            int start = labelOffsets.get(v);
+            if (labelOffsets.get(v + 1) - start != wanted.length) {
+                return false;
+            }
+            for (int i = 0; i < wanted.length; i++) {
+                if (labels.get(start + i) != wanted[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int outOffset(int v) {
+            return outOffsets.get(v);
+        }
+
+        @Override
+        public int outTarget(int p) {
+            return outTargets.get(p);
+        }
+
+        @Override
+        public int inOffset(int v) {
+            return inOffsets.get(v);
+        }
+
+        @Override
+        public int inTarget(int p) {
+            return inTargets.get(p);
+        }
+
+        @Override
+        public double weight(int p) {
+            return outWeights == null ? Graph.DEFAULT_EDGE_WEIGHT : outWeights.get(p);
+        }
+
+        @Override
+        public boolean isWeighted() {
+            return outWeights != null;
+        }
+
+        // The whole graph copied onto the heap, for everything that is not a search
+        CsrGraph toCsr() {
+            int[] offsets = new int[n + 1];
+            labelOffsets.get(0, offsets);
+            byte[] blob = new byte[labels.limit()];
+            labels.get(0, blob);
+            int[] outOffsets = new int[n + 1];
+            this.outOffsets.get(0, outOffsets);
+            int[] outTargets = new int[m];
+            this.outTargets.get(0, outTargets);
+            int[] inOffsets = new int[n + 1];
+            this.inOffsets.get(0, inOffsets);
+            int[] inTargets = new int[m];
+            this.inTargets.get(0, inTargets);
+            double[] weights = null;
+            if (outWeights != null) {
+                weights = new double[m];
+                outWeights.get(0, weights);
+            }
+            return new CsrGraph(GraphSnapshot.labels(blob, offsets, n), outOffsets, outTargets, inOffsets, inTargets,
+                    weights, n);
+        }
+    }
+
+    // Buffered little-endian channel writer that checksums everything it writes
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void bytes(byte[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(values, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void ints(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                ensure(4);
+                int chunk = Math.min(values.length - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, done, chunk);
+                buffer.position(buffer.position() + chunk * 4);
+                done += chunk;
+            }
+        }
+
+        void doubles(double[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                ensure(8);
+                int chunk = Math.min(values.length - done, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().put(values, done, chunk);
+                buffer.position(buffer.position() + chunk * 8);
+                done += chunk;
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Binary min-heap of vertex ids keyed by double priorities, with each vertex's heap position
+ * tracked so decrease-key is O(log n). Keys and positions are indexed by vertex id.
+ */
+final class IndexedHeap {
+    private int[] heap = new int[0];
+    private int[] pos = new int[0];
+    private double[] key = new double[0];
+    private int size;
+
+    void reset(int n) {
+        if (pos.length < n) {
+            heap = new int[n];
+            pos = new int[n];
+            key = new double[n];
+        }
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Only meaningful for vertices inserted since the last reset
+    boolean contains(int v) {
+        return pos[v] >= 0;
+    }
+
+    void insert(int v, double priority) {
+        key[v] = priority;
+        heap[size] = v;
+        siftUp(size++);
+    }
+
+    void decrease(int v, double priority) {
+        key[v] = priority;
+        siftUp(pos[v]);
+    }
+
+    int pop() {
+        int top = heap[0];
+        pos[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double k = key[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pv = heap[parent];
+            if (key[pv] <= k) {
+                break;
+            }
+            heap[i] = pv;
+            pos[pv] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double k = key[v];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int cv = heap[child];
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[cv]) {
+                child = right;
+                cv = heap[child];
+            }
+            if (k <= key[cv]) {
+                break;
+            }
+            heap[i] = cv;
+            pos[cv] = i;
+            i = child;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+}
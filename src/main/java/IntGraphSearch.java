@@ -0,0 +1,541 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Template for searches over the int ids of an {@link Adjacency}. Scratch state is borrowed
+ * from a shared pool and handed back by getPath, so the search loops themselves allocate
+ * nothing; only the returned {@link Path} is new.
+ */
+abstract class IntGraphSearchAlgorithm implements SearchStrategy {
+    protected final Adjacency graph;
+    protected final int source;
+    protected final int destination;
+    protected SearchScratch scratch;
+    // Work counters reported through SearchMetrics
+    protected long expanded;
+    protected long scanned;
+    protected int peakFrontier;
+
+    public IntGraphSearchAlgorithm(int src, int dst, Adjacency graph) {
+        this.graph = graph;
+        source = src;
+        destination = dst;
+        scratch = SearchScratch.acquire();
+        scratch.begin(graph.size());
+    }
+
+    // Counts one expanded node, the edges it scanned and the frontier size after it
+    protected void expanded(int edges, int frontier) {
+        expanded++;
+        scanned += edges;
+        if (frontier > peakFrontier) {
+            peakFrontier = frontier;
+        }
+    }
+
+    public long nodesExpanded() {
+        return expanded;
+    }
+
+    public long edgesScanned() {
+        return scanned;
+    }
+
+    public int peakFrontier() {
+        return peakFrontier;
+    }
+
+    // An interrupt abandons the search, e.g. when searchAll cancels or times out a query
+    protected boolean cancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    // Template method defining the common steps
+    public Path graphSearch() {
+        selectAlgorithm();
+        executeAlgorithm();
+        return getPath();
+    }
+
+    // Unknown labels resolve to -1 and never match
+    protected boolean resolved() {
+        return source >= 0 && destination >= 0;
+    }
+
+    public Path getPath() {
+        Path path = null;
+        if (resolved() && scratch.isVisited(destination)) {
+            path = new Path();
+            for (int node = destination; node != source; node = scratch.parent[node]) {
+                path.add(graph.label(node));
+            }
+            path.add(graph.label(source));
+        }
+        SearchScratch.release(scratch);
+        scratch = null;
+        return path;
+    }
+}
+
+class IntBFS extends IntGraphSearchAlgorithm {
+    private int tail;
+
+    public IntBFS(int src, int dst, Adjacency graph) {
+        super(src, dst, graph);
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        if (resolved()) {
+            scratch.visit(source, -1);
+            scratch.frontier[tail++] = source;
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        int[] queue = scratch.frontier;
+        int head = 0;
+        while (head < tail) {
+            int src = queue[head++];
+            if (src == destination || cancelled()) {
+                break;
+            }
+            // Neighbours in the order Graphs.neighborListOf gives them: incoming, then outgoing
+            int in = graph.inOffset(src);
+            int inEnd = graph.inOffset(src + 1);
+            for (int p = in; p < inEnd; p++) {
+                int node = graph.inTarget(p);
+                if (scratch.visit(node, src)) {
+                    queue[tail++] = node;
+                }
+            }
+            int out = graph.outOffset(src);
+            int outEnd = graph.outOffset(src + 1);
+            for (int p = out; p < outEnd; p++) {
+                int node = graph.outTarget(p);
+                if (node != src && scratch.visit(node, src)) {
+                    queue[tail++] = node;
+                }
+            }
+            expanded(inEnd - in + outEnd - out, tail - head);
+        }
+    }
+}
+
+class IntDFS extends IntGraphSearchAlgorithm {
+    private int top;
+
+    public IntDFS(int src, int dst, Adjacency graph) {
+        super(src, dst, graph);
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        if (resolved()) {
+            scratch.visit(source, -1);
+            scratch.frontier[top++] = source;
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        int[] stack = scratch.frontier;
+        while (top > 0) {
+            int src = stack[--top];
+            if (src == destination || cancelled()) {
+                break;
+            }
+            int in = graph.inOffset(src);
+            int inEnd = graph.inOffset(src + 1);
+            for (int p = in; p < inEnd; p++) {
+                int node = graph.inTarget(p);
+                if (scratch.visit(node, src)) {
+                    stack[top++] = node;
+                }
+            }
+            int out = graph.outOffset(src);
+            int outEnd = graph.outOffset(src + 1);
+            for (int p = out; p < outEnd; p++) {
+                int node = graph.outTarget(p);
+                if (node != src && scratch.visit(node, src)) {
+                    stack[top++] = node;
+                }
+            }
+            expanded(inEnd - in + outEnd - out, top);
+        }
+    }
+}
+
+class IntRWS extends IntGraphSearchAlgorithm {
+    private int count;
+    private final SplittableRandom random;
+    // Raised once any walker of an IntParallelRWS has finished; null for a lone walk
+    private AtomicBoolean stop;
+
+    public IntRWS(int src, int dst, Adjacency graph) {
+        this(src, dst, graph, new SplittableRandom());
+    }
+
+    // The same seed on the same graph walks the same way and finds the same path
+    public IntRWS(int src, int dst, Adjacency graph, SplittableRandom random) {
+        super(src, dst, graph);
+        this.random = random;
+    }
+
+    void stopWith(AtomicBoolean stop) {
+        this.stop = stop;
+    }
+
+    @Override
+    protected boolean cancelled() {
+        return (stop != null && stop.get()) || super.cancelled();
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        if (resolved()) {
+            scratch.visit(source, -1);
+            scratch.frontier[count++] = source;
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        int[] pool = scratch.frontier;
+        while (count > 0) {
+            // Swap-remove a random frontier entry
+            int pick = random.nextInt(count);
+            int src = pool[pick];
+            pool[pick] = pool[--count];
+            if (src == destination || cancelled()) {
+                break;
+            }
+            int out = graph.outOffset(src);
+            int outEnd = graph.outOffset(src + 1);
+            for (int p = out; p < outEnd; p++) {
+                int node = graph.outTarget(p);
+                if (scratch.visit(node, src)) {
+                    pool[count++] = node;
+                }
+            }
+            expanded(outEnd - out, count);
+        }
+    }
+
+    // Whether the walk got to the destination before it ended or was stopped
+    boolean found() {
+        return resolved() && scratch.isVisited(destination);
+    }
+}
+
+/**
+ * Several independent random walks over the same graph, each with its own seed split from one
+ * {@link SplittableRandom}. The caller runs the first walk and the common {@link ForkJoinPool}
+ * runs the others; the first walk to finish stops the rest, and its path is the result.
+ * Every walk visits all it can reach, so one finishing without a path means there is none.
+ */
+class IntParallelRWS implements SearchStrategy {
+    private final IntRWS[] walkers;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private final AtomicInteger winner = new AtomicInteger(-1);
+
+    public IntParallelRWS(int src, int dst, Adjacency graph, long seed, int walkers) {
+        if (walkers <= 0) {
+            throw new IllegalArgumentException("Need at least one walker");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        this.walkers = new IntRWS[walkers];
+        for (int i = 0; i < walkers; i++) {
+            this.walkers[i] = new IntRWS(src, dst, graph, random.split());
+            this.walkers[i].stopWith(stop);
+        }
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        for (IntRWS walker : walkers) {
+            walker.selectAlgorithm();
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[walkers.length];
+        for (int i = 1; i < walkers.length; i++) {
+            int index = i;
+            tasks[i] = ForkJoinPool.commonPool().submit(() -> walk(index));
+        }
+        // On the caller's thread, so an interrupt there stops every walker
+        walk(0);
+        for (int i = 1; i < walkers.length; i++) {
+            tasks[i].join();
+        }
+    }
+
+    private void walk(int index) {
+        if (stop.get()) {
+            return;
+        }
+        IntRWS walker = walkers[index];
+        walker.executeAlgorithm();
+        if (walker.found() || !walker.cancelled()) {
+            winner.compareAndSet(-1, index);
+        }
+        stop.set(true);
+    }
+
+    // Work of all walkers together; the peak is the largest single walker's frontier
+    public long nodesExpanded() {
+        long total = 0;
+        for (IntRWS walker : walkers) {
+            total += walker.nodesExpanded();
+        }
+        return total;
+    }
+
+    public long edgesScanned() {
+        long total = 0;
+        for (IntRWS walker : walkers) {
+            total += walker.edgesScanned();
+        }
+        return total;
+    }
+
+    public int peakFrontier() {
+        int peak = 0;
+        for (IntRWS walker : walkers) {
+            peak = Math.max(peak, walker.peakFrontier());
+        }
+        return peak;
+    }
+
+    @Override
+    public Path getPath() {
+        Path path = null;
+        int index = winner.get();
+        for (int i = 0; i < walkers.length; i++) {
+            Path walk = walkers[i].getPath();
+            if (i == index) {
+                path = walk;
+            }
+        }
+        return path;
+    }
+}
+
+/**
+ * Level-synchronous BFS that expands each frontier level across the common {@link ForkJoinPool}.
+ * Workers claim neighbours with an atomic bit in a shared visited bitset, collect their claims
+ * in private buffers, and the buffers are concatenated into the next frontier. Neighbours are
+ * undirected like {@link IntBFS}, so paths have the same length, though which shortest path is
+ * found depends on scheduling.
+ */
+class IntPBFS extends IntGraphSearchAlgorithm {
+    // Frontier slices below this many vertices are expanded by a single worker
+    private static final int GRAIN = 256;
+
+    private AtomicLongArray claimed;
+    private int[] frontier = new int[0];
+    // Workers check the caller's interrupt flag, not their own
+    private Thread caller;
+
+    public IntPBFS(int src, int dst, Adjacency graph) {
+        super(src, dst, graph);
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        if (resolved()) {
+            claimed = new AtomicLongArray((graph.size() + 63) >>> 6);
+            claim(source, -1);
+            frontier = new int[]{source};
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        caller = Thread.currentThread();
+        while (frontier.length > 0 && !scratch.isVisited(destination) && !cancelled()) {
+            // Counted per level on this thread, so workers share no counters
+            for (int src : frontier) {
+                scanned += graph.inDegree(src) + graph.outDegree(src);
+            }
+            expanded += frontier.length;
+            peakFrontier = Math.max(peakFrontier, frontier.length);
+            List<int[]> parts = ForkJoinPool.commonPool().invoke(new Expand(0, frontier.length));
+            int size = 0;
+            for (int[] part : parts) {
+                size += part.length;
+            }
+            int[] next = new int[size];
+            int at = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, next, at, part.length);
+                at += part.length;
+            }
+            frontier = next;
+        }
+    }
+
+    // Marks v as visited from u unless another worker got there first
+    private boolean claim(int v, int u) {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        long bits;
+        do {
+            bits = claimed.get(word);
+            if ((bits & bit) != 0) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(word, bits, bits | bit));
+        // Only the claiming worker writes these slots; the pool's join publishes them
+        scratch.stamp[v] = scratch.epoch;
+        scratch.parent[v] = u;
+        return true;
+    }
+
+    private class Expand extends RecursiveTask<List<int[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Expand(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (to - from > GRAIN) {
+                int mid = (from + to) >>> 1;
+                Expand right = new Expand(mid, to);
+                right.fork();
+                List<int[]> parts = new Expand(from, mid).compute();
+                parts.addAll(right.join());
+                return parts;
+            }
+            int[] local = new int[16];
+            int count = 0;
+            for (int i = from; i < to && !caller.isInterrupted(); i++) {
+                int src = frontier[i];
+                int inEnd = graph.inOffset(src + 1);
+                for (int p = graph.inOffset(src); p < inEnd; p++) {
+                    int node = graph.inTarget(p);
+                    if (claim(node, src)) {
+                        if (count == local.length) {
+                            local = Arrays.copyOf(local, count * 2);
+                        }
+                        local[count++] = node;
+                    }
+                }
+                int outEnd = graph.outOffset(src + 1);
+                for (int p = graph.outOffset(src); p < outEnd; p++) {
+                    int node = graph.outTarget(p);
+                    if (node != src && claim(node, src)) {
+                        if (count == local.length) {
+                            local = Arrays.copyOf(local, count * 2);
+                        }
+                        local[count++] = node;
+                    }
+                }
+            }
+            List<int[]> parts = new ArrayList<>();
+            parts.add(Arrays.copyOf(local, count));
+            return parts;
+        }
+    }
+}
+
+/**
+ * Cheapest path along edge directions by total edge weight. Weights must be non-negative.
+ */
+class Dijkstra extends IntGraphSearchAlgorithm {
+    public Dijkstra(int src, int dst, Adjacency graph) {
+        super(src, dst, graph);
+        scratch.beginWeighted(graph.size());
+    }
+
+    // Lower bound on the cost from v to the destination; zero makes this plain Dijkstra
+    protected double estimate(int v) {
+        return 0;
+    }
+
+    @Override
+    public void selectAlgorithm() {
+        if (resolved()) {
+            scratch.visit(source, -1);
+            scratch.cost[source] = 0;
+            scratch.estimate[source] = estimate(source);
+            scratch.heap.insert(source, scratch.estimate[source]);
+        }
+    }
+
+    @Override
+    public void executeAlgorithm() {
+        IndexedHeap heap = scratch.heap;
+        double[] cost = scratch.cost;
+        double[] estimate = scratch.estimate;
+        while (!heap.isEmpty()) {
+            int src = heap.pop();
+            if (src == destination || cancelled()) {
+                break;
+            }
+            int out = graph.outOffset(src);
+            int outEnd = graph.outOffset(src + 1);
+            for (int p = out; p < outEnd; p++) {
+                int node = graph.outTarget(p);
+                double through = cost[src] + graph.weight(p);
+                if (scratch.visit(node, src)) {
+                    cost[node] = through;
+                    estimate[node] = estimate(node);
+                    heap.insert(node, through + estimate[node]);
+                } else if (through < cost[node] && heap.contains(node)) {
+                    cost[node] = through;
+                    scratch.parent[node] = src;
+                    heap.decrease(node, through + estimate[node]);
+                }
+            }
+            expanded(outEnd - out, heap.size());
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        double total = resolved() && scratch.isVisited(destination) ? scratch.cost[destination] : Double.NaN;
+        Path path = super.getPath();
+        if (path != null) {
+            path.cost = total;
+        }
+        return path;
+    }
+}
+
+/**
+ * Dijkstra guided by a heuristic on node labels. The heuristic must never overestimate the
+ * remaining cost, and should be consistent (h(u) <= w(u, v) + h(v)); settled nodes are not
+ * reopened.
+ */
+class AStar extends Dijkstra {
+    private final ToDoubleFunction<String> heuristic;
+
+    public AStar(int src, int dst, Adjacency graph, ToDoubleFunction<String> heuristic) {
+        super(src, dst, graph);
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    protected double estimate(int v) {
+        return heuristic == null ? 0 : heuristic.applyAsDouble(graph.label(v));
+    }
+}
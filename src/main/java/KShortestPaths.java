@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Loopless paths from src to dst in order of increasing cost (hops on unweighted graphs),
+ * found by Yen's algorithm over the int ids of a {@link CsrGraph}. Each call to next() does
+ * only the work for one more path: the spur searches of the path returned before it.
+ * <p>
+ * Following Lawler, a path remembers the node where it left the path it was derived from.
+ * Its prefix up to there is shared with that path, whose spurs were already searched, so only
+ * spurs from that node on are searched again. Spur searches reuse one set of stamped arrays,
+ * and one reverse Dijkstra from dst, run before the first path: its distances stay lower
+ * bounds when spurs remove nodes and edges, so every spur search is an A* that heads straight
+ * for dst and skips nodes that cannot reach it.
+ */
+final class KShortestPaths implements Iterator<Path> {
+    private final CsrGraph csr;
+    private final int source;
+    private final int destination;
+
+    // Paths returned so far, and candidates waiting by cost then length
+    private final List<Found> accepted = new ArrayList<>();
+    private final PriorityQueue<Found> candidates = new PriorityQueue<>();
+    private final Set<Key> seen = new HashSet<>();
+    private Found pending;
+    private boolean started;
+
+    // Spur search state; a vertex counts as reached, blocked or cut only for the current stamp
+    private final double[] cost;
+    private final int[] parent;
+    private final int[] reached;
+    private final int[] blocked;
+    private final int[] cut;
+    private final IndexedHeap heap = new IndexedHeap();
+    private int epoch;
+    // Cost from each node to dst in the whole graph, infinite if it cannot reach dst
+    private double[] remaining;
+
+    KShortestPaths(int source, int destination, CsrGraph csr) {
+        this.csr = csr;
+        this.source = source;
+        this.destination = destination;
+        int n = csr.size();
+        cost = new double[n];
+        parent = new int[n];
+        reached = new int[n];
+        blocked = new int[n];
+        cut = new int[n];
+    }
+
+    // A path as ids from src to dst, with the index of the node where it left its parent path
+    private static final class Found implements Comparable<Found> {
+        final int[] nodes;
+        final double cost;
+        final int deviation;
+
+        Found(int[] nodes, double cost, int deviation) {
+            this.nodes = nodes;
+            this.cost = cost;
+            this.deviation = deviation;
+        }
+
+        @Override
+        public int compareTo(Found other) {
+            int c = Double.compare(cost, other.cost);
+            return c != 0 ? c : Integer.compare(nodes.length, other.nodes.length);
+        }
+    }
+
+    private record Key(int[] nodes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(nodes, ((Key) o).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            pending = advance();
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Found found = pending;
+        pending = null;
+        accepted.add(found);
+        Path path = new Path();
+        for (int i = found.nodes.length - 1; i >= 0; i--) {
+            path.add(csr.label(found.nodes[i]));
+        }
+        path.cost = found.cost;
+        return path;
+    }
+
+    private Found advance() {
+        if (source < 0 || destination < 0) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            remaining = distancesTo(destination);
+            if (Double.isInfinite(remaining[source])) {
+                return null;
+            }
+            epoch++;
+            Found first = search(source, new int[] {source}, 0, 0);
+            if (first != null) {
+                seen.add(new Key(first.nodes));
+            }
+            return first;
+        }
+        if (accepted.isEmpty()) {
+            return null;
+        }
+        spurs(accepted.get(accepted.size() - 1));
+        return candidates.poll();
+    }
+
+    // Queues a candidate for every node of last from its deviation on: the root up to that
+    // node, then the cheapest way to dst avoiding the root and every edge that a path already
+    // returned takes out of the same root
+    private void spurs(Found last) {
+        int[] nodes = last.nodes;
+        double rootCost = 0;
+        for (int i = 0; i < last.deviation; i++) {
+            rootCost += edgeWeight(nodes[i], nodes[i + 1]);
+        }
+        for (int i = last.deviation; i < nodes.length - 1; i++) {
+            epoch++;
+            for (int j = 0; j < i; j++) {
+                blocked[nodes[j]] = epoch;
+            }
+            for (Found other : accepted) {
+                if (other.nodes.length > i + 1 && Arrays.equals(other.nodes, 0, i + 1, nodes, 0, i + 1)) {
+                    cut[other.nodes[i + 1]] = epoch;
+                }
+            }
+            Found candidate = search(nodes[i], Arrays.copyOf(nodes, i + 1), rootCost, i);
+            if (candidate != null && seen.add(new Key(candidate.nodes))) {
+                candidates.add(candidate);
+            }
+            rootCost += edgeWeight(nodes[i], nodes[i + 1]);
+        }
+    }
+
+    // A* from the last node of root to dst for the current stamp; the result is root followed
+    // by the spur path
+    private Found search(int from, int[] root, double rootCost, int deviation) {
+        heap.reset(csr.size());
+        reached[from] = epoch;
+        cost[from] = 0;
+        parent[from] = -1;
+        heap.insert(from, remaining[from]);
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            if (u == destination) {
+                return found(root, rootCost, deviation);
+            }
+            boolean spur = u == from;
+            for (int p = csr.outOffsets[u]; p < csr.outOffsets[u + 1]; p++) {
+                int v = csr.outTargets[p];
+                if (blocked[v] == epoch || (spur && cut[v] == epoch) || Double.isInfinite(remaining[v])) {
+                    continue;
+                }
+                double next = cost[u] + csr.weight(p);
+                if (reached[v] != epoch) {
+                    reached[v] = epoch;
+                    cost[v] = next;
+                    parent[v] = u;
+                    heap.insert(v, next + remaining[v]);
+                } else if (next < cost[v] && heap.contains(v)) {
+                    cost[v] = next;
+                    parent[v] = u;
+                    heap.decrease(v, next + remaining[v]);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Found found(int[] root, double rootCost, int deviation) {
+        int length = 0;
+        for (int v = destination; v != -1; v = parent[v]) {
+            length++;
+        }
+        int[] nodes = Arrays.copyOf(root, root.length - 1 + length);
+        int i = nodes.length - 1;
+        for (int v = destination; v != -1; v = parent[v]) {
+            nodes[i--] = v;
+        }
+        return new Found(nodes, rootCost + cost[destination], deviation);
+    }
+
+    // Dijkstra along in-edges from target
+    private double[] distancesTo(int target) {
+        double[] distance = new double[csr.size()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        boolean[] done = new boolean[csr.size()];
+        heap.reset(csr.size());
+        distance[target] = 0;
+        heap.insert(target, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.pop();
+            done[v] = true;
+            for (int q = csr.inOffsets[v]; q < csr.inOffsets[v + 1]; q++) {
+                int u = csr.inTargets[q];
+                if (done[u]) {
+                    continue;
+                }
+                double next = distance[v] + edgeWeight(u, v);
+                if (Double.isInfinite(distance[u])) {
+                    distance[u] = next;
+                    heap.insert(u, next);
+                } else if (next < distance[u]) {
+                    distance[u] = next;
+                    heap.decrease(u, next);
+                }
+            }
+        }
+        return distance;
+    }
+
+    // In-edges carry no weights, so weighted graphs look the edge up among u's out-edges
+    private double edgeWeight(int u, int v) {
+        return csr.isWeighted() ? csr.weight(csr.findOut(u, v)) : csr.weight(-1);
+    }
+}
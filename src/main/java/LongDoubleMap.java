@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from non-negative longs to doubles, the weighted counterpart of
+ * {@link LongHashSet}. Keys are packed (src, dst) edge keys; deletion uses backward shifting.
+ */
+final class LongDoubleMap {
+    long[] keys;
+    double[] values;
+    private int size;
+    private int mask;
+
+    LongDoubleMap() {
+        keys = new long[16];
+        values = new double[16];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = 15;
+    }
+
+    LongDoubleMap copy() {
+        LongDoubleMap copy = new LongDoubleMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        copy.mask = mask;
+        return copy;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        int i = slot(key);
+        while (keys[i] != LongHashSet.EMPTY) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    double get(long key, double missing) {
+        int i = find(key);
+        return i < 0 ? missing : values[i];
+    }
+
+    void put(long key, double value) {
+        int i = slot(key);
+        while (keys[i] != LongHashSet.EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    boolean remove(long key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return false;
+        }
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == LongHashSet.EMPTY) {
+                break;
+            }
+            int home = slot(k);
+            // Move k into the hole if its probe sequence passes over the hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = k;
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = LongHashSet.EMPTY;
+        size--;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new long[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != LongHashSet.EMPTY) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != LongHashSet.EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
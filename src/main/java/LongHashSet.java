@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of non-negative longs, used to hold packed (src, dst) edge keys
+ * without boxing. Deletion uses backward shifting so no tombstones pile up.
+ */
+final class LongHashSet {
+    static final long EMPTY = -1L;
+
+    long[] table;
+    private int size;
+    private int mask;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+    }
+
+    LongHashSet copy() {
+        LongHashSet copy = new LongHashSet();
+        copy.table = table.clone();
+        copy.size = size;
+        copy.mask = mask;
+        return copy;
+    }
+
+    static long key(int src, int dst) {
+        return ((long) src << 32) | (dst & 0xffffffffL);
+    }
+
+    static int src(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int dst(long key) {
+        return (int) key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    boolean contains(long key) {
+        int i = slot(key);
+        while (table[i] != EMPTY) {
+            if (table[i] == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    boolean add(long key) {
+        int i = slot(key);
+        while (table[i] != EMPTY) {
+            if (table[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        if (++size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    boolean remove(long key) {
+        int i = slot(key);
+        while (table[i] != EMPTY) {
+            if (table[i] == key) {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = table[i];
+            if (k == EMPTY) {
+                break;
+            }
+            int home = slot(k);
+            // Move k into the hole if its probe sequence passes over the hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = k;
+                hole = i;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        for (long k : old) {
+            if (k != EMPTY) {
+                int i = slot(k);
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = k;
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of graph mutations in a directory of numbered generations:
+ * <pre>
+ * graph-&lt;g&gt;.snapshot   the whole graph as of the start of generation g ({@link GraphSnapshot})
+ * graph-&lt;g&gt;.log        every mutation made during generation g, in order
+ * </pre>
+ * A log file is a header (int magic, byte format) followed by records
+ * {@code varint length | payload | int CRC32C of payload}, where the payload is one op byte,
+ * its labels as varint length + UTF-8, and for SET_WEIGHT the weight as a double. A torn
+ * record at the end of the newest log is what a crash mid-write leaves; recovery drops it.
+ * <p>
+ * Records are appended to a memory buffer; {@link #commit} writes and fsyncs the buffer once for
+ * all the records appended so far, so writers waiting together share one fsync (group commit).
+ * A batch that fails to write is cut off the file again and retried by the next commit; only
+ * if the file cannot be cut back does every later commit fail, until the log is reopened.
+ * Compaction starts a new generation and then writes its snapshot, after which the older files
+ * are deleted. A crash at any point leaves either the old snapshot with both logs or the new
+ * snapshot with the new log, and recovery replays from the newest complete snapshot.
+ */
+final class MutationLog implements Closeable {
+    static final byte ADD_NODE = 1;
+    static final byte REMOVE_NODE = 2;
+    static final byte ADD_EDGE = 3;
+    static final byte REMOVE_EDGE = 4;
+    static final byte SET_WEIGHT = 5;
+
+    private static final int MAGIC = 0x474d4c47;
+    private static final byte FORMAT = 1;
+    private static final int HEADER_BYTES = 5;
+    private static final Pattern FILE = Pattern.compile("graph-(\\d+)\\.(snapshot|log)");
+    // Compaction is due once the log outgrows both this and the last snapshot, so its O(graph)
+    // cost is paid at most once per O(graph) bytes of mutations
+    static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    // Receives the recovered state: the snapshot (or an empty graph), then every logged mutation
+    interface Replay {
+        void snapshot(CsrGraph graph);
+
+        void apply(byte op, String source, String target, double weight);
+    }
+
+    private final java.nio.file.Path directory;
+    private FileChannel channel;
+    private long generation;
+    private long logBytes;
+    private long snapshotBytes;
+
+    // Records appended but not yet written, and the sequence numbers of appended and fsynced records
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    // Set while one thread writes and fsyncs outside the monitor; the others wait for it
+    private boolean syncing;
+    private boolean compacting;
+    // Set once the log may end in a torn record that could not be cut off
+    private IOException failure;
+
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final CRC32C crc = new CRC32C();
+
+    private MutationLog(java.nio.file.Path directory) {
+        this.directory = directory;
+    }
+
+    // True if directory holds no snapshot or log yet
+    static boolean isEmpty(java.nio.file.Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return true;
+        }
+        try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(directory)) {
+            for (java.nio.file.Path file : files) {
+                if (FILE.matcher(file.getFileName().toString()).matches()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Replays the directory into replay and opens its newest log for appending. A new directory
+    // is not replayed and gets an empty generation 0, which has no snapshot yet
+    static MutationLog open(java.nio.file.Path directory, Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, java.nio.file.Path> snapshots = new TreeMap<>();
+        TreeMap<Long, java.nio.file.Path> logs = new TreeMap<>();
+        try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(directory)) {
+            for (java.nio.file.Path file : files) {
+                Matcher m = FILE.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    (m.group(2).equals("log") ? logs : snapshots).put(Long.parseLong(m.group(1)), file);
+                }
+            }
+        }
+        MutationLog log = new MutationLog(directory);
+        long start = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (snapshots.isEmpty()) {
+            if (!logs.isEmpty()) {
+                replay.snapshot(CsrGraph.empty());
+            }
+        } else {
+            java.nio.file.Path snapshot = snapshots.lastEntry().getValue();
+            replay.snapshot(GraphSnapshot.read(snapshot.toString()));
+            log.snapshotBytes = Files.size(snapshot);
+        }
+        List<Long> generations = new ArrayList<>(logs.tailMap(start, true).keySet());
+        for (int i = 0; i < generations.size(); i++) {
+            java.nio.file.Path file = logs.get(generations.get(i));
+            long valid = replay(file, replay);
+            if (valid < Files.size(file)) {
+                if (i < generations.size() - 1) {
+                    throw new IOException("Corrupt record in " + file + " at byte " + valid);
+                }
+                // Torn tail of the newest log: cut it so appends continue after the last good record
+                try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    truncate.truncate(valid);
+                    truncate.force(true);
+                }
+            }
+        }
+        if (generations.isEmpty()) {
+            log.generation = start;
+            log.channel = create(log.file(start, "log"));
+            log.logBytes = HEADER_BYTES;
+        } else {
+            log.generation = generations.get(generations.size() - 1);
+            java.nio.file.Path file = log.file(log.generation, "log");
+            // A crash while creating the log can leave it without a complete header
+            log.channel = Files.size(file) < HEADER_BYTES ? create(file)
+                    : FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            log.logBytes = Files.size(file);
+        }
+        return log;
+    }
+
+    // Offset just past the last intact record
+    private static long replay(java.nio.file.Path file, Replay replay) throws IOException {
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (size < HEADER_BYTES) {
+                return 0;
+            }
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT) {
+                throw new IOException("Not a mutation log: " + file);
+            }
+            long valid = HEADER_BYTES;
+            CRC32C crc = new CRC32C();
+            while (true) {
+                byte[] payload;
+                try {
+                    int[] lengthBytes = new int[1];
+                    int length = readVarint(in, lengthBytes);
+                    // A torn length can claim more bytes than the file has left
+                    if (length <= 0 || valid + lengthBytes[0] + length + 4 > size) {
+                        return valid;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        return valid;
+                    }
+                    valid += lengthBytes[0] + length + 4;
+                } catch (EOFException e) {
+                    return valid;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                byte op = buffer.get();
+                String source = readString(buffer);
+                String target = op >= ADD_EDGE ? readString(buffer) : null;
+                double weight = op == SET_WEIGHT ? buffer.getDouble() : Double.NaN;
+                replay.apply(op, source, target, weight);
+            }
+        }
+    }
+
+    // Buffers one mutation and returns its sequence number for commit
+    synchronized long append(byte op, String source, String target, double weight) {
+        record.reset();
+        record.write(op);
+        writeString(record, source);
+        if (target != null) {
+            writeString(record, target);
+        }
+        if (op == SET_WEIGHT) {
+            long bits = Double.doubleToLongBits(weight);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                record.write((int) (bits >>> shift));
+            }
+        }
+        byte[] payload = record.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        writeVarint(pending, payload.length);
+        pending.write(payload, 0, payload.length);
+        int check = (int) crc.getValue();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            pending.write(check >>> shift);
+        }
+        return ++appended;
+    }
+
+    // Returns once record seq is on disk. The first waiter writes everything appended so far;
+    // writers that append meanwhile wait and are covered by the next fsync. If that fails, only
+    // the writing thread gets the error; the batch goes back in front of the buffer, so the
+    // next commit, e.g. by one of the waiters, writes it again
+    void commit(long seq) throws IOException {
+        byte[] batch;
+        long target;
+        FileChannel out;
+        synchronized (this) {
+            while (durable < seq && syncing) {
+                awaitSync();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (durable >= seq) {
+                return;
+            }
+            syncing = true;
+            batch = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            target = appended;
+            out = channel;
+        }
+        IOException error = null;
+        try {
+            write(out, batch);
+            out.force(false);
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                if (error == null) {
+                    durable = target;
+                    logBytes += batch.length;
+                } else {
+                    rollBack(out, error);
+                    ByteArrayOutputStream retry = new ByteArrayOutputStream(batch.length + pending.size());
+                    retry.writeBytes(batch);
+                    retry.writeBytes(pending.toByteArray());
+                    pending = retry;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // Cuts whatever part of a failed write reached the file, so the log still ends after its
+    // last complete record
+    private void rollBack(FileChannel out, IOException error) {
+        try {
+            out.truncate(logBytes);
+        } catch (IOException e) {
+            error.addSuppressed(e);
+            failure = error;
+        }
+    }
+
+    synchronized boolean compactionDue() {
+        return !compacting && logBytes > Math.max(MIN_COMPACTION_BYTES, snapshotBytes);
+    }
+
+    // Claims the compaction; false if another thread already has it
+    synchronized boolean startCompaction() {
+        if (compacting) {
+            return false;
+        }
+        compacting = true;
+        return true;
+    }
+
+    synchronized void endCompaction() {
+        compacting = false;
+    }
+
+    // Flushes the current generation and starts the next; the caller must hold the graph's write
+    // lock so the graph it captures is exactly the state at the start of the returned generation
+    synchronized long rotate() throws IOException {
+        while (syncing) {
+            awaitSync();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        byte[] batch = pending.toByteArray();
+        try {
+            write(channel, batch);
+            channel.force(false);
+        } catch (IOException e) {
+            rollBack(channel, e);
+            throw e;
+        }
+        pending = new ByteArrayOutputStream();
+        durable = appended;
+        logBytes += batch.length;
+        // The new log is created before the old one is closed, so a failure keeps logging here
+        java.nio.file.Path next = file(generation + 1, "log");
+        FileChannel created;
+        try {
+            created = create(next);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(next);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        FileChannel old = channel;
+        channel = created;
+        generation++;
+        logBytes = HEADER_BYTES;
+        old.close();
+        syncDirectory();
+        return generation;
+    }
+
+    // Makes graph the snapshot of generation, then deletes the files it replaces
+    void writeSnapshot(CsrGraph graph, long generation) throws IOException {
+        // Forced and atomically renamed into place by GraphSnapshot
+        java.nio.file.Path snapshot = file(generation, "snapshot");
+        GraphSnapshot.write(graph, snapshot.toString());
+        synchronized (this) {
+            snapshotBytes = Files.size(snapshot);
+        }
+        try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(directory)) {
+            for (java.nio.file.Path file : files) {
+                Matcher m = FILE.matcher(file.getFileName().toString());
+                if (m.matches() && Long.parseLong(m.group(1)) < generation) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    // Commits everything appended and closes the current log
+    @Override
+    public void close() throws IOException {
+        long last;
+        synchronized (this) {
+            last = appended;
+        }
+        try {
+            commit(last);
+        } finally {
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+
+    private java.nio.file.Path file(long generation, String kind) {
+        return directory.resolve("graph-" + generation + "." + kind);
+    }
+
+    private static FileChannel create(java.nio.file.Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        write(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(FORMAT).array());
+        channel.force(true);
+        return channel;
+    }
+
+    private static void write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // New and renamed files only survive a crash once their directory entry is synced as well
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the rename itself is still atomic
+        }
+    }
+
+    private void awaitSync() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the mutation log", e);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // bytes[0] gets the number of bytes read; -1 when the stream ends before the first byte
+    private static int readVarint(InputStream in, int[] bytes) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            bytes[0]++;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -4,6 +4,8 @@ import java.util.List;
 
 public class Path {
     List<String> path;
+    // Total edge weight, set by the weighted searches; NaN for hop-based ones
+    double cost = Double.NaN;
     Path() {
         path = new ArrayList<String>();
     }
@@ -12,11 +14,25 @@ public class Path {
         path.add(node);
     }
 
+    public double getCost() {
+        return cost;
+    }
+
+    Path copy() {
+        Path copy = new Path();
+        copy.path.addAll(path);
+        copy.cost = cost;
+        return copy;
+    }
+
     public void printPath() {
         if (path != null) {
             Collections.reverse(path);
             String s = String.join("->", path);
             System.out.println(s);
+            if (!Double.isNaN(cost)) {
+                System.out.println("Cost: " + cost);
+            }
         } else {
             System.out.println("Path is empty");
         }
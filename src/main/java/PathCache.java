@@ -0,0 +1,75 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of search results keyed by (source, destination, algorithm).
+ * Entries belong to one graph version; the first lookup or store at a newer version drops
+ * them all. Callers get copies, since Path.printPath reverses its list in place.
+ */
+final class PathCache {
+    // Stored for searches that found no path, so misses can be told from cached nulls
+    static final Path NONE = new Path();
+
+    record Key(String source, String destination, GraphData.Algorithm algo) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, long invalidations, int size) {
+    }
+
+    private final LinkedHashMap<Key, Path> entries;
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    PathCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Path> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Copy of the cached path, NONE for a cached "no path", or null on a miss
+    synchronized Path get(Key key, long version) {
+        validate(version);
+        Path path = entries.get(key);
+        if (path == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return path == NONE ? NONE : path.copy();
+    }
+
+    synchronized void put(Key key, long version, Path path) {
+        validate(version);
+        if (version == this.version) {
+            entries.put(key, path == null ? NONE : path.copy());
+        }
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, invalidations, entries.size());
+    }
+
+    // Results computed against an older graph than the entries are ignored by put
+    private void validate(long version) {
+        if (version > this.version) {
+            if (!entries.isEmpty()) {
+                entries.clear();
+                invalidations++;
+            }
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Scores of every node from {@link GraphData#pageRank} or {@link GraphData#betweenness}, kept
+ * as one double per int id of the snapshot they were computed on.
+ */
+public final class Ranking {
+    private final CompactGraph graph;
+    private final double[] scores;
+    private final int iterations;
+    private final boolean converged;
+
+    Ranking(CompactGraph graph, double[] scores, int iterations, boolean converged) {
+        this.graph = graph;
+        this.scores = scores;
+        this.iterations = iterations;
+        this.converged = converged;
+    }
+
+    // Score of label, or 0 for a node the snapshot did not have
+    public double score(String label) {
+        int v = graph.idOf(label);
+        return v < 0 ? 0 : scores[v];
+    }
+
+    // Up to k labels, highest score first
+    public List<String> top(int k) {
+        // Min-heap of the best k ids so far, lower ids winning ties
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) ->
+                scores[a] != scores[b] ? Double.compare(scores[a], scores[b]) : Integer.compare(b, a));
+        for (int v = 0; v < scores.length && k > 0; v++) {
+            if (graph.labelOf(v) == null) {
+                continue;
+            }
+            if (best.size() < k) {
+                best.add(v);
+            } else if (best.comparator().compare(v, best.peek()) > 0) {
+                best.poll();
+                best.add(v);
+            }
+        }
+        List<String> top = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            top.add(graph.labelOf(best.poll()));
+        }
+        Collections.reverse(top);
+        return top;
+    }
+
+    // PageRank: iterations run. Betweenness: sources sampled
+    public int iterations() {
+        return iterations;
+    }
+
+    // PageRank: whether it met the tolerance. Betweenness: whether every node was a source
+    public boolean converged() {
+        return converged;
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.Arrays;
+
+/**
+ * Answers "can dst be reached from src along edge directions" without a traversal.
+ * Strongly connected components are found with an iterative Tarjan and condensed into a DAG,
+ * which is then labelled with pruned landmark labels (Yano et al.): every component keeps the
+ * landmarks that reach it and the landmarks it reaches, and src reaches dst exactly when
+ * those two sets share a landmark. Landmarks are taken in order of DAG degree, and each one
+ * only labels the components no earlier landmark already covers, which keeps labels short.
+ */
+final class ReachabilityIndex {
+    // Graph version this index describes, see GraphData.isReachable
+    final long version;
+    private final CompactGraph graph;
+    // Component of every vertex id, -1 for holes. Components are numbered in the order Tarjan
+    // completes them, so every DAG edge goes from a higher number to a lower one
+    private final int[] component;
+    private final int componentCount;
+    // Landmark ranks per component, ascending: landmarks reaching it, and landmarks it reaches
+    private final int[] inOffsets;
+    private final int[] inLabels;
+    private final int[] outOffsets;
+    private final int[] outLabels;
+
+    ReachabilityIndex(CompactGraph graph, long version) {
+        this.graph = graph;
+        this.version = version;
+        CsrGraph csr = graph.freeze();
+        component = new int[csr.size()];
+        componentCount = GraphAnalytics.strongComponents(csr, component);
+
+        // Condensed DAG in both directions, parallel edges merged
+        int[] members = new int[component.length];
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int c : component) {
+            if (c >= 0) {
+                memberOffsets[c + 1]++;
+            }
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] fill = Arrays.copyOf(memberOffsets, componentCount);
+        for (int v = 0; v < component.length; v++) {
+            if (component[v] >= 0) {
+                members[fill[component[v]]++] = v;
+            }
+        }
+        int[] dagOffsets = new int[componentCount + 1];
+        int[] dagTargets = new int[16];
+        int[] seen = new int[componentCount];
+        Arrays.fill(seen, -1);
+        int dagEdges = 0;
+        for (int c = 0; c < componentCount; c++) {
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                int v = members[i];
+                for (int p = csr.outOffsets[v]; p < csr.outOffsets[v + 1]; p++) {
+                    int d = component[csr.outTargets[p]];
+                    if (d != c && seen[d] != c) {
+                        seen[d] = c;
+                        if (dagEdges == dagTargets.length) {
+                            dagTargets = Arrays.copyOf(dagTargets, dagEdges * 2);
+                        }
+                        dagTargets[dagEdges++] = d;
+                    }
+                }
+            }
+            dagOffsets[c + 1] = dagEdges;
+        }
+        int[] dagInOffsets = new int[componentCount + 1];
+        for (int p = 0; p < dagEdges; p++) {
+            dagInOffsets[dagTargets[p] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            dagInOffsets[c + 1] += dagInOffsets[c];
+        }
+        int[] dagSources = new int[dagEdges];
+        fill = Arrays.copyOf(dagInOffsets, componentCount);
+        for (int c = 0; c < componentCount; c++) {
+            for (int p = dagOffsets[c]; p < dagOffsets[c + 1]; p++) {
+                dagSources[fill[dagTargets[p]]++] = c;
+            }
+        }
+
+        // Landmark order: components with many DAG neighbours in both directions cover the most pairs
+        long[] order = new long[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            long product = (long) (dagOffsets[c + 1] - dagOffsets[c] + 1) * (dagInOffsets[c + 1] - dagInOffsets[c] + 1);
+            order[c] = (Integer.MAX_VALUE - Math.min(product, Integer.MAX_VALUE)) << 32 | c;
+        }
+        Arrays.sort(order);
+
+        Labels in = new Labels(componentCount);
+        Labels out = new Labels(componentCount);
+        int[] queue = new int[componentCount];
+        Arrays.fill(seen, -1);
+        for (int rank = 0; rank < componentCount; rank++) {
+            int landmark = (int) order[rank];
+            in.add(landmark, rank);
+            out.add(landmark, rank);
+            // Forward: label what the landmark reaches, unless an earlier landmark already links them
+            int head = 0;
+            int tail = 0;
+            seen[landmark] = 2 * rank;
+            for (int p = dagOffsets[landmark]; p < dagOffsets[landmark + 1]; p++) {
+                seen[dagTargets[p]] = 2 * rank;
+                queue[tail++] = dagTargets[p];
+            }
+            while (head < tail) {
+                int c = queue[head++];
+                if (out.intersects(landmark, in, c)) {
+                    continue;
+                }
+                in.add(c, rank);
+                for (int p = dagOffsets[c]; p < dagOffsets[c + 1]; p++) {
+                    int d = dagTargets[p];
+                    if (seen[d] != 2 * rank) {
+                        seen[d] = 2 * rank;
+                        queue[tail++] = d;
+                    }
+                }
+            }
+            // Backward: label what reaches the landmark
+            head = 0;
+            tail = 0;
+            seen[landmark] = 2 * rank + 1;
+            for (int p = dagInOffsets[landmark]; p < dagInOffsets[landmark + 1]; p++) {
+                seen[dagSources[p]] = 2 * rank + 1;
+                queue[tail++] = dagSources[p];
+            }
+            while (head < tail) {
+                int c = queue[head++];
+                if (out.intersects(c, in, landmark)) {
+                    continue;
+                }
+                out.add(c, rank);
+                for (int p = dagInOffsets[c]; p < dagInOffsets[c + 1]; p++) {
+                    int d = dagSources[p];
+                    if (seen[d] != 2 * rank + 1) {
+                        seen[d] = 2 * rank + 1;
+                        queue[tail++] = d;
+                    }
+                }
+            }
+        }
+        inOffsets = in.offsets();
+        inLabels = in.flatten(inOffsets);
+        outOffsets = out.offsets();
+        outLabels = out.flatten(outOffsets);
+    }
+
+    private ReachabilityIndex(ReachabilityIndex index, long version) {
+        this.version = version;
+        graph = index.graph;
+        component = index.component;
+        componentCount = index.componentCount;
+        inOffsets = index.inOffsets;
+        inLabels = index.inLabels;
+        outOffsets = index.outOffsets;
+        outLabels = index.outLabels;
+    }
+
+    // Same index for a later version whose edits did not change reachability
+    ReachabilityIndex at(long version) {
+        return new ReachabilityIndex(this, version);
+    }
+
+    public int componentCount() {
+        return componentCount;
+    }
+
+    // Total landmark entries over all components, in both directions
+    public long labelCount() {
+        return inLabels.length + (long) outLabels.length;
+    }
+
+    // False when either node is unknown
+    public boolean isReachable(String src, String dst) {
+        int u = graph.idOf(src);
+        int v = graph.idOf(dst);
+        if (u < 0 || v < 0) {
+            return false;
+        }
+        int cu = component[u];
+        int cv = component[v];
+        if (cu == cv) {
+            return true;
+        }
+        // Edges only lead to lower component numbers
+        if (cu < cv) {
+            return false;
+        }
+        int i = outOffsets[cu];
+        int iEnd = outOffsets[cu + 1];
+        int j = inOffsets[cv];
+        int jEnd = inOffsets[cv + 1];
+        while (i < iEnd && j < jEnd) {
+            if (outLabels[i] == inLabels[j]) {
+                return true;
+            } else if (outLabels[i] < inLabels[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    // Growable sorted rank lists, one per component
+    private static final class Labels {
+        private final int[][] ranks;
+        private final int[] sizes;
+
+        Labels(int count) {
+            ranks = new int[count][];
+            sizes = new int[count];
+        }
+
+        void add(int c, int rank) {
+            if (ranks[c] == null) {
+                ranks[c] = new int[2];
+            } else if (sizes[c] == ranks[c].length) {
+                ranks[c] = Arrays.copyOf(ranks[c], sizes[c] * 2);
+            }
+            ranks[c][sizes[c]++] = rank;
+        }
+
+        // Whether this list for a shares a rank with the other list for b
+        boolean intersects(int a, Labels other, int b) {
+            int[] x = ranks[a];
+            int[] y = other.ranks[b];
+            int i = 0;
+            int j = 0;
+            while (i < sizes[a] && j < other.sizes[b]) {
+                if (x[i] == y[j]) {
+                    return true;
+                } else if (x[i] < y[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return false;
+        }
+
+        int[] offsets() {
+            int[] offsets = new int[sizes.length + 1];
+            for (int c = 0; c < sizes.length; c++) {
+                offsets[c + 1] = offsets[c] + sizes[c];
+            }
+            return offsets;
+        }
+
+        int[] flatten(int[] offsets) {
+            int[] flat = new int[offsets[sizes.length]];
+            for (int c = 0; c < sizes.length; c++) {
+                if (sizes[c] > 0) {
+                    System.arraycopy(ranks[c], 0, flat, offsets[c], sizes[c]);
+                }
+            }
+            return flat;
+        }
+    }
+}
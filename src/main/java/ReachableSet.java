@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodes reachable from a set of roots, with their hop distance from the nearest root.
+ * Distances are kept in one int per vertex id of the graph snapshot that was searched.
+ */
+public class ReachableSet {
+    private final CompactGraph graph;
+    private final int[] distance;
+    private final int size;
+    private final int depth;
+
+    ReachableSet(CompactGraph graph, int[] distance, int size, int depth) {
+        this.graph = graph;
+        this.distance = distance;
+        this.size = size;
+        this.depth = depth;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Largest hop distance of any reachable node
+    public int depth() {
+        return depth;
+    }
+
+    public boolean contains(String label) {
+        return distance(label) >= 0;
+    }
+
+    // Hops from the nearest root, or -1 if the node is unreachable or unknown
+    public int distance(String label) {
+        int id = graph.idOf(label);
+        return id < 0 ? -1 : distance[id];
+    }
+
+    public List<String> labels() {
+        List<String> labels = new ArrayList<>(size);
+        for (int id = 0; id < distance.length; id++) {
+            if (distance[id] >= 0) {
+                labels.add(graph.labelOf(id));
+            }
+        }
+        return labels;
+    }
+
+    // Nodes exactly the given number of hops from the roots
+    public List<String> labelsAt(int hops) {
+        List<String> labels = new ArrayList<>();
+        for (int id = 0; id < distance.length; id++) {
+            if (distance[id] == hops) {
+                labels.add(graph.labelOf(id));
+            }
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histogram per algorithm, fed as a {@link SearchListener}. Buckets are log-linear:
+ * eight per power of two, so a percentile is off by at most 12.5%, and recording a search is
+ * a few atomic adds with no allocation. The slowest search per algorithm is kept to track
+ * down pathological queries.
+ */
+public class SearchHistogram implements SearchListener {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    // Enough buckets for any non-negative long
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray[] buckets = new AtomicLongArray[GraphData.Algorithm.values().length];
+    private final AtomicLong[] counts = new AtomicLong[buckets.length];
+    private final AtomicReferenceArray<SearchMetrics> slowest = new AtomicReferenceArray<>(buckets.length);
+
+    public SearchHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new AtomicLongArray(BUCKETS);
+            counts[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public void onSearch(SearchMetrics metrics) {
+        int a = metrics.algorithm().ordinal();
+        buckets[a].incrementAndGet(bucket(Math.max(0, metrics.wallNanos())));
+        counts[a].incrementAndGet();
+        SearchMetrics worst = slowest.get(a);
+        while ((worst == null || metrics.wallNanos() > worst.wallNanos())
+                && !slowest.compareAndSet(a, worst, metrics)) {
+            worst = slowest.get(a);
+        }
+    }
+
+    public long count(GraphData.Algorithm algo) {
+        return counts[algo.ordinal()].get();
+    }
+
+    // Latency in nanoseconds that the given percentage (0-100) of searches did not exceed, 0 if none ran
+    public long percentile(GraphData.Algorithm algo, double percent) {
+        AtomicLongArray histogram = buckets[algo.ordinal()];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += histogram.get(b);
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS && total > 0; b++) {
+            seen += histogram.get(b);
+            if (seen >= rank) {
+                return upperBound(b);
+            }
+        }
+        return 0;
+    }
+
+    public SearchMetrics slowest(GraphData.Algorithm algo) {
+        return slowest.get(algo.ordinal());
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length; i++) {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[i].set(b, 0);
+            }
+            counts[i].set(0);
+            slowest.set(i, null);
+        }
+    }
+
+    // One line per algorithm that ran: count, p50, p99 and the slowest search
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (GraphData.Algorithm algo : GraphData.Algorithm.values()) {
+            long count = count(algo);
+            if (count == 0) {
+                continue;
+            }
+            report.append(String.format("%s: %d searches, p50 %.3f ms, p99 %.3f ms, slowest %s%n", algo, count,
+                    percentile(algo, 50) / 1e6, percentile(algo, 99) / 1e6, slowest(algo)));
+        }
+        return report.toString();
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // Largest value that falls in bucket b
+    static long upperBound(int b) {
+        if (b < SUB) {
+            return b;
+        }
+        int exponent = b / SUB + SUB_BITS - 1;
+        int sub = b % SUB;
+        return ((long) (SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
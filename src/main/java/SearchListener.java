@@ -0,0 +1,13 @@
+/**
+ * Receives the metrics of every search a {@link GraphData} runs, on the thread that ran it.
+ * Implementations shared by concurrent searches must be thread-safe.
+ */
+@FunctionalInterface
+public interface SearchListener {
+    void onSearch(SearchMetrics metrics);
+
+    // One line per search on stdout
+    static SearchListener console() {
+        return metrics -> System.out.println(metrics);
+    }
+}
@@ -0,0 +1,32 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What one search did and cost. Nodes expanded counts nodes whose neighbours were scanned;
+ * the peak frontier is the largest queue, stack, pool or heap the search held. Bytes read and
+ * written are file I/O, only done by {@link GraphData#GraphSearchOnDisk}. Allocation is
+ * measured on the calling thread only, so work done by pool threads (PBFS, parallel walkers)
+ * is not included; it is -1 where the JVM cannot measure it, e.g. on virtual threads.
+ */
+public record SearchMetrics(GraphData.Algorithm algorithm, String source, String destination, boolean found,
+                            long nodesExpanded, long edgesScanned, int peakFrontier,
+                            long bytesRead, long bytesWritten, long wallNanos, long allocatedBytes) {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Bytes allocated so far by the current thread, or -1 if not available
+    static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        String io = bytesRead == 0 && bytesWritten == 0 ? ""
+                : String.format(", %d B read, %d B written", bytesRead, bytesWritten);
+        return String.format("%s %s -> %s: %s, %d expanded, %d edges scanned, peak frontier %d%s, %.3f ms, %s",
+                algorithm, source, destination, found ? "found" : "no path", nodesExpanded, edgesScanned,
+                peakFrontier, io, wallNanos / 1e6, allocatedBytes < 0 ? "allocation unknown" : allocatedBytes + " B");
+    }
+}
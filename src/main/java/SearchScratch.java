@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable working memory for the int-id searches and neighbourhood extraction. A vertex
+ * counts as visited when its stamp equals the current epoch, so starting a query only bumps
+ * the epoch instead of clearing the arrays. The frontier array backs the BFS queue, the DFS stack and the RWS pool;
+ * each vertex enters it at most once, so n slots are always enough.
+ */
+final class SearchScratch {
+    // A few idle instances shared by all threads; virtual threads live for one query, so a
+    // ThreadLocal would allocate fresh arrays every time
+    private static final AtomicReferenceArray<SearchScratch> POOL =
+            new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    int[] stamp = new int[0];
+    int[] parent = new int[0];
+    int[] frontier = new int[0];
+    int epoch;
+    // Only weighted searches use these, so they are sized on first use
+    double[] cost = new double[0];
+    double[] estimate = new double[0];
+    final IndexedHeap heap = new IndexedHeap();
+
+    static SearchScratch acquire() {
+        for (int i = 0; i < POOL.length(); i++) {
+            SearchScratch scratch = POOL.getAndSet(i, null);
+            if (scratch != null) {
+                return scratch;
+            }
+        }
+        return new SearchScratch();
+    }
+
+    // Returns scratch to the pool; it is dropped if the pool is full
+    static void release(SearchScratch scratch) {
+        for (int i = 0; i < POOL.length(); i++) {
+            if (POOL.get(i) == null && POOL.compareAndSet(i, null, scratch)) {
+                return;
+            }
+        }
+    }
+
+    void begin(int n) {
+        if (stamp.length < n) {
+            int capacity = Math.max(n, stamp.length * 2);
+            stamp = Arrays.copyOf(stamp, capacity);
+            parent = new int[capacity];
+            frontier = new int[capacity];
+        }
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    void beginWeighted(int n) {
+        if (cost.length < n) {
+            cost = new double[stamp.length];
+            estimate = new double[stamp.length];
+        }
+        heap.reset(stamp.length);
+    }
+
+    boolean isVisited(int v) {
+        return stamp[v] == epoch;
+    }
+
+    // Marks v as reached from the given parent; false if it was already visited
+    boolean visit(int v, int from) {
+        if (stamp[v] == epoch) {
+            return false;
+        }
+        stamp[v] = epoch;
+        parent[v] = from;
+        return true;
+    }
+}
@@ -2,5 +2,18 @@ public interface SearchStrategy {
     void selectAlgorithm();
     void executeAlgorithm();
     Path getPath();
+    // Work counters for SearchMetrics, read once the search has run
+    long nodesExpanded();
+    long edgesScanned();
+    int peakFrontier();
+
+    // Disk traffic of searches that run out of core; searches in memory do none
+    default long bytesRead() {
+        return 0;
+    }
+
+    default long bytesWritten() {
+        return 0;
+    }
 }
 
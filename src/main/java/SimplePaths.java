@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Paths from src to dst that visit no node twice, with at most maxDepth edges, at most
+ * maxCount of them, in depth-first order over the int ids of a {@link CsrGraph}. The search
+ * stack survives between calls, so each next() resumes where the last path was found.
+ * <p>
+ * A reverse BFS from dst, bounded by maxDepth, runs before the first path. The walk only
+ * steps onto nodes that can still reach dst within the remaining edges, so it never explores
+ * branches that cannot lead to another path.
+ */
+final class SimplePaths implements Iterator<Path> {
+    private final CsrGraph csr;
+    private final int source;
+    private final int destination;
+    private final int maxDepth;
+    private long remaining;
+
+    // Hops from each node to dst, -1 if more than maxDepth; null until the first call
+    private int[] toDestination;
+    // Current path as ids, and for each of them the next out-edge position to try
+    private int[] stack;
+    private int[] edge;
+    private boolean[] onPath;
+    private int depth;
+    private Path pending;
+
+    SimplePaths(int source, int destination, CsrGraph csr, int maxDepth, long maxCount) {
+        this.csr = csr;
+        this.source = source;
+        this.destination = destination;
+        this.maxDepth = maxDepth;
+        remaining = maxCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null && remaining > 0) {
+            pending = advance();
+            if (pending != null) {
+                remaining--;
+            }
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Path path = pending;
+        pending = null;
+        return path;
+    }
+
+    private Path advance() {
+        if (toDestination == null) {
+            if (source < 0 || destination < 0 || maxDepth < 0) {
+                return null;
+            }
+            start();
+            if (source == destination) {
+                // The path of no edges; longer ones would repeat the node
+                depth = 0;
+                return path(0);
+            }
+            if (toDestination[source] < 0) {
+                depth = 0;
+            }
+        }
+        while (depth > 0) {
+            int u = stack[depth - 1];
+            if (edge[depth - 1] == csr.outOffsets[u + 1]) {
+                onPath[u] = false;
+                depth--;
+                continue;
+            }
+            int v = csr.outTargets[edge[depth - 1]++];
+            // Edges used so far plus this one plus the hops still needed from v
+            if (onPath[v] || toDestination[v] < 0 || depth + toDestination[v] > maxDepth) {
+                continue;
+            }
+            if (v == destination) {
+                stack[depth] = v;
+                return path(depth);
+            }
+            stack[depth] = v;
+            edge[depth] = csr.outOffsets[v];
+            onPath[v] = true;
+            depth++;
+        }
+        return null;
+    }
+
+    private void start() {
+        int n = csr.size();
+        toDestination = new int[n];
+        Arrays.fill(toDestination, -1);
+        int[] queue = new int[n];
+        int count = 0;
+        toDestination[destination] = 0;
+        queue[count++] = destination;
+        for (int head = 0; head < count; head++) {
+            int v = queue[head];
+            if (toDestination[v] == maxDepth) {
+                continue;
+            }
+            for (int q = csr.inOffsets[v]; q < csr.inOffsets[v + 1]; q++) {
+                int u = csr.inTargets[q];
+                if (toDestination[u] < 0) {
+                    toDestination[u] = toDestination[v] + 1;
+                    queue[count++] = u;
+                }
+            }
+        }
+        stack = new int[Math.min(n, maxDepth) + 1];
+        edge = new int[stack.length];
+        onPath = new boolean[n];
+        stack[0] = source;
+        edge[0] = csr.outOffsets[source];
+        onPath[source] = true;
+        depth = 1;
+    }
+
+    // Stack entries 0..last as a Path, listed from dst back to src like the searches
+    private Path path(int last) {
+        Path path = new Path();
+        double total = 0;
+        for (int i = last; i >= 0; i--) {
+            path.add(csr.label(stack[i]));
+            if (i > 0) {
+                total += csr.weight(csr.findOut(stack[i - 1], stack[i]));
+            }
+        }
+        path.cost = total;
+        return path;
+    }
+}
@@ -0,0 +1,90 @@
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+/**
+ * Default storage graph. jgrapht's weighted graphs keep weights in wrapper objects that hide
+ * a DefaultEdge's endpoints, so here each edge carries its own weight instead.
+ */
+class WeightedDirectedGraph extends DefaultDirectedGraph<String, DefaultEdge> {
+    private static final long serialVersionUID = 1L;
+
+    static final class WeightedEdge extends DefaultEdge {
+        private static final long serialVersionUID = 1L;
+
+        private double weight = DEFAULT_EDGE_WEIGHT;
+    }
+
+    // Successful mutations so far, to tell whether a batch of them changed anything
+    private long modCount;
+
+    WeightedDirectedGraph() {
+        super(null, WeightedEdge::new, false);
+    }
+
+    long modCount() {
+        return modCount;
+    }
+
+    @Override
+    public boolean addVertex(String v) {
+        return counted(super.addVertex(v));
+    }
+
+    @Override
+    public DefaultEdge addEdge(String sourceVertex, String targetVertex) {
+        DefaultEdge e = super.addEdge(sourceVertex, targetVertex);
+        counted(e != null);
+        return e;
+    }
+
+    @Override
+    public boolean addEdge(String sourceVertex, String targetVertex, DefaultEdge e) {
+        return counted(super.addEdge(sourceVertex, targetVertex, e));
+    }
+
+    @Override
+    public boolean removeVertex(String v) {
+        return counted(super.removeVertex(v));
+    }
+
+    @Override
+    public DefaultEdge removeEdge(String sourceVertex, String targetVertex) {
+        DefaultEdge e = super.removeEdge(sourceVertex, targetVertex);
+        counted(e != null);
+        return e;
+    }
+
+    @Override
+    public boolean removeEdge(DefaultEdge e) {
+        return counted(super.removeEdge(e));
+    }
+
+    private boolean counted(boolean changed) {
+        if (changed) {
+            modCount++;
+        }
+        return changed;
+    }
+
+    @Override
+    public GraphType getType() {
+        return super.getType().asWeighted();
+    }
+
+    @Override
+    public double getEdgeWeight(DefaultEdge e) {
+        return e instanceof WeightedEdge we ? we.weight : DEFAULT_EDGE_WEIGHT;
+    }
+
+    @Override
+    public void setEdgeWeight(DefaultEdge e, double weight) {
+        if (!(e instanceof WeightedEdge we) || !containsEdge(e)) {
+            throw new IllegalArgumentException("no such edge in graph: " + e);
+        }
+        if (we.weight != weight) {
+            we.weight = weight;
+            modCount++;
+        }
+    }
+}
@@ -1,16 +1,48 @@
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.Graphs;
+import org.jgrapht.alg.scoring.BetweennessCentrality;
+import org.jgrapht.alg.scoring.PageRank;
+import org.jgrapht.alg.shortestpath.AllDirectedPaths;
+import org.jgrapht.alg.shortestpath.YenKShortestPath;
+import org.jgrapht.graph.AsUndirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class GraphDataTest {
     GraphData graphApi = new GraphData();
@@ -219,4 +251,1153 @@ public class GraphDataTest {
         assertEquals(expected_value, Files.readString(Paths.get(OUTPUT_GRAPH_DOT_PATH)));
     }
 
+    @Test
+    @DisplayName("Test compact storage matches default storage")
+    public void TestCompactStorage() {
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        assertTrue(compactApi.parseGraph(GRAPH_PATH));
+        assertEquals(graphApi.toString(), compactApi.toString());
+        assertTrue(compactApi.addNode("Z"));
+        assertTrue(compactApi.addEdge("Z", "C"));
+        assertFalse(compactApi.addEdge("Z", "C"));
+        Path path = compactApi.GraphSearch("Z", "D", GraphData.Algorithm.BFS);
+        assertEquals(List.of("D", "A", "C", "Z"), path.path);
+    }
+
+    @Test
+    @DisplayName("Test compact storage removals")
+    public void TestCompactStorageRemove() throws Exception {
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        assertTrue(compactApi.parseGraph(GRAPH_PATH));
+        compactApi.removeEdge("A", "B");
+        compactApi.removeNode("C");
+        assertEquals(Set.of("A", "B", "D"), compactApi.getGraph().vertexSet());
+        assertEquals(1, compactApi.getGraph().edgeSet().size());
+        assertThrows(Exception.class, () -> compactApi.removeEdge("A", "C"));
+        assertThrows(UnsupportedOperationException.class, () -> compactApi.getGraph().addVertex("Q"));
+    }
+
+    @Test
+    @DisplayName("Test compact storage reuses the ids of removed vertices")
+    public void TestCompactStorageChurn() {
+        CompactGraph graph = new CompactGraph();
+        int live = 1000;
+        for (int v = 0; v < live; v++) {
+            graph.addEdge(graph.intern("v" + v), graph.intern("v" + (v + 1) % live));
+        }
+        // Replace the oldest vertex with one linked to the newest, many times over the graph's size
+        int last = 50 * live;
+        for (int v = live; v < last; v++) {
+            assertTrue(graph.removeVertex("v" + (v - live)));
+            graph.addEdge(graph.intern("v" + v), graph.intern("v" + (v - 1)));
+            if (v % 100 == 0) {
+                assertTrue(graph.freeze().size() <= live + 4096);
+            }
+        }
+        CsrGraph csr = graph.freeze();
+        assertEquals(live, csr.vertexCount());
+        assertEquals(live - 1, csr.edgeCount());
+        for (int v = last - live + 1; v < last; v++) {
+            int u = graph.idOf("v" + v);
+            assertEquals("v" + v, csr.label(u));
+            assertTrue(csr.hasEdge(u, graph.idOf("v" + (v - 1))));
+            assertTrue(graph.containsEdge(u, graph.idOf("v" + (v - 1))));
+        }
+    }
+
+    @Test
+    @DisplayName("Test addNodes keeps inserting after a duplicate")
+    public void TestAddNodesAfterDuplicate(){
+        assertFalse(graphApi.addNodes(new String[]{"A", "Y", "Z"}));
+        assertTrue(graphApi.getGraph().containsVertex("Y"));
+        assertTrue(graphApi.getGraph().containsVertex("Z"));
+    }
+
+    @Test
+    @DisplayName("Test batch node and edge mutation")
+    public void TestBatchMutation(){
+        assertArrayEquals(new boolean[]{true, false, true}, graphApi.addNodes(List.of("X", "A", "Y")));
+        boolean[] added = graphApi.addEdges(new String[][]{{"X", "Y"}, {"A", "B"}, {"X", "Q"}, {"Y", "A"}});
+        assertArrayEquals(new boolean[]{true, false, false, true}, added);
+        assertEquals(5, graphApi.getGraph().edgeSet().size());
+        assertArrayEquals(new boolean[]{true, false}, graphApi.removeNodes(List.of("X", "Q")));
+        assertFalse(graphApi.getGraph().containsVertex("X"));
+    }
+
+    @Test
+    @DisplayName("Test streaming parser matches parseGraph")
+    public void TestParseGraphStreaming() {
+        GraphData streamApi = new GraphData();
+        long[] progress = new long[2];
+        assertTrue(streamApi.parseGraphStreaming(GRAPH_PATH, (read, total) -> {
+            progress[0] = read;
+            progress[1] = total;
+        }));
+        assertEquals(graphApi.toString(), streamApi.toString());
+        assertEquals(progress[1], progress[0]);
+        assertTrue(graphApi.parseGraph(CANVAS_GRAPH_PATH));
+        assertTrue(streamApi.parseGraphStreaming(CANVAS_GRAPH_PATH));
+        assertEquals(graphApi.toString(), streamApi.toString());
+    }
+
+    @Test
+    @DisplayName("Test streaming parser syntax coverage")
+    public void TestParseGraphStreamingSyntax() throws IOException {
+        java.nio.file.Path file = Files.createTempFile("stream", ".dot");
+        Files.writeString(file, """
+                /* header */ strict digraph "G" {
+                  node [shape=box];
+                  "quoted \\"id\\"" -> B -> C [label="x", weight=2];
+                  // line comment
+                  D:port -> { E F }
+                  G [label=<b>bold</b>]
+                  rankdir = LR
+                }
+                """);
+        GraphData streamApi = new GraphData();
+        assertTrue(streamApi.parseGraphStreaming(file.toString()));
+        assertEquals(Set.of("quoted \"id\"", "B", "C", "D", "E", "F", "G"), streamApi.getGraph().vertexSet());
+        assertEquals(4, streamApi.getGraph().edgeSet().size());
+        assertTrue(streamApi.getGraph().containsEdge("D", "F"));
+        Files.writeString(file, "digraph { A -> ; }");
+        assertFalse(streamApi.parseGraphStreaming(file.toString()));
+        Files.delete(file);
+    }
+
+    @Test
+    @DisplayName("Test parallel import matches the sequential import")
+    public void TestParseGraphParallel() throws IOException {
+        java.nio.file.Path file = Files.createTempFile("parallel", ".dot");
+        StringBuilder dot = new StringBuilder("strict digraph G {\n");
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            dot.append("  n").append(random.nextInt(3000)).append(" -> n").append(random.nextInt(3000)).append(";\n");
+            if (i % 1000 == 0) {
+                dot.append("  \"quoted;\nnode").append(i).append("\";\n");
+            }
+        }
+        dot.append("}\n");
+        Files.writeString(file, dot);
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData sequential = new GraphData(storage);
+            GraphData parallel = new GraphData(storage);
+            assertTrue(sequential.parseGraphStreaming(file.toString()));
+            assertTrue(parallel.parseGraphParallel(file.toString(), 4));
+            assertEquals(sequential.toString(), parallel.toString());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    @DisplayName("Test streaming and jgrapht imports build the same weighted graph")
+    public void TestParseGraphStreamingMatchesImporter() throws IOException {
+        java.nio.file.Path file = Files.createTempFile("weighted", ".dot");
+        // Repeated edges keep their first weight, strict or not
+        String body = "  a -> b [weight=2];\n  a -> b [weight=5];\n  b -> c -> \"d e\" [weight=0.5];\n"
+                + "  c -> \"d e\";\n  e;\n  \"d e\" -> a [weight=3, color=red];\n";
+        for (String header : List.of("digraph G {\n", "strict digraph G {\n")) {
+            Files.writeString(file, header + body + "}\n");
+            for (GraphData.Storage storage : GraphData.Storage.values()) {
+                GraphData imported = new GraphData(storage);
+                GraphData streamed = new GraphData(storage);
+                assertTrue(imported.parseGraph(file.toString()));
+                assertTrue(streamed.parseGraphStreaming(file.toString()));
+                assertEquals(imported.toString(), streamed.toString());
+                assertEquals(edgeWeights(imported), edgeWeights(streamed));
+                assertEquals(2.0, edgeWeights(streamed).get("a->b"));
+            }
+        }
+        // Undirected files are rejected by every import rather than read as one-way edges
+        Files.writeString(file, "graph G {\n  a -- b [weight=2];\n}\n");
+        GraphData undirected = new GraphData();
+        assertFalse(undirected.parseGraph(file.toString()));
+        assertFalse(undirected.parseGraphStreaming(file.toString()));
+        assertFalse(undirected.parseGraphParallel(file.toString(), 2));
+        assertEquals(0, undirected.getGraph().vertexSet().size());
+        Files.delete(file);
+    }
+
+    private static Map<String, Double> edgeWeights(GraphData graph) {
+        Graph<String, DefaultEdge> g = graph.getGraph();
+        Map<String, Double> weights = new HashMap<>();
+        for (DefaultEdge e : g.edgeSet()) {
+            weights.put(g.getEdgeSource(e) + "->" + g.getEdgeTarget(e), g.getEdgeWeight(e));
+        }
+        return weights;
+    }
+
+    @Test
+    @DisplayName("Test binary snapshot round trip")
+    public void TestSnapshot() throws Exception {
+        java.nio.file.Path file = Files.createTempFile("graph", ".snap");
+        graphApi.addNode("Ünïcode");
+        graphApi.addEdge("Ünïcode", "B");
+        graphApi.removeNode("C");
+        assertTrue(graphApi.saveSnapshot(file.toString()));
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData loaded = new GraphData(storage);
+            assertTrue(loaded.loadSnapshot(file.toString()));
+            // Searched in the mapped file first, then in the storage toString builds from it
+            assertEquals(List.of("Ünïcode", "B"), loaded.GraphSearch("Ünïcode", "B", GraphData.Algorithm.DFS).path.reversed());
+            assertNull(loaded.GraphSearch("Ünïcode", "C", GraphData.Algorithm.BFS));
+            assertEquals(graphApi.toString(), loaded.toString());
+            assertEquals(List.of("Ünïcode", "B"), loaded.GraphSearch("Ünïcode", "B", GraphData.Algorithm.DFS).path.reversed());
+            assertTrue(loaded.addEdge("B", "Ünïcode"));
+            assertEquals(List.of("B", "Ünïcode"), loaded.GraphSearch("B", "Ünïcode", GraphData.Algorithm.DIJKSTRA).path.reversed());
+        }
+
+        // A damaged body gets past the header checks and only fails the checksum
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertFalse(new GraphData().loadSnapshot(file.toString(), true));
+        // A damaged header fails without the checksum
+        bytes[bytes.length / 2] ^= 1;
+        bytes[16] ^= 1;
+        Files.write(file, bytes);
+        assertFalse(new GraphData().loadSnapshot(file.toString()));
+        // Saving again replaces the damaged file whole, through a temporary file that is gone after
+        assertTrue(graphApi.saveSnapshot(file.toString()));
+        assertTrue(new GraphData().loadSnapshot(file.toString()));
+        assertFalse(Files.exists(Paths.get(file + ".tmp")));
+        Files.delete(file);
+    }
+
+    @Test
+    @DisplayName("Test gzip DOT export and non-Latin-1 labels")
+    public void TestOutputDOTGraphStreaming() throws IOException {
+        graphApi.addNode("Z");
+        graphApi.addEdge("Z","C");
+        java.nio.file.Path file = Files.createTempFile("gen_graph", ".dot.gz");
+        assertTrue(graphApi.outputDOTGraph(file.toString(), StandardCharsets.UTF_8, true));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            String expected_value = Files.readString(Paths.get(EXPECTED_GRAPH_DOT_PATH));
+            assertEquals(expected_value, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        graphApi.addNode("图 node");
+        graphApi.addEdge("图 node", "A");
+        java.nio.file.Path dot = Files.createTempFile("gen_graph", ".dot");
+        assertTrue(graphApi.outputDOTGraph(dot.toString()));
+        GraphData reparsed = new GraphData();
+        assertTrue(reparsed.parseGraphStreaming(dot.toString()));
+        assertEquals(graphApi.toString(), reparsed.toString());
+        Files.delete(file);
+        Files.delete(dot);
+    }
+
+    @Test
+    @DisplayName("Test toString of a graph without edges")
+    public void TestToStringNoEdges() {
+        GraphData emptyApi = new GraphData();
+        emptyApi.addNode("A");
+        assertEquals("Number of nodes: 1\nNode labels: [A]\nNumber of edges: 0\nNode and edge directions: \n",
+                emptyApi.toString());
+    }
+
+    @Test
+    @DisplayName("Test bidirectional bfs graph search api")
+    public void TestGraphSearchBIBFS() {
+        assertEquals(List.of("D", "A"), graphApi.GraphSearch("A", "D", GraphData.Algorithm.BIBFS).path);
+        assertNull(graphApi.GraphSearch("C", "D", GraphData.Algorithm.BIBFS));
+        assertNull(graphApi.GraphSearch("C", "X", GraphData.Algorithm.BIBFS));
+        graphApi.parseGraph(CANVAS_GRAPH_PATH);
+        assertEquals(List.of("c", "b", "a"), graphApi.GraphSearch("a", "c", GraphData.Algorithm.BIBFS).path);
+        assertEquals(4, graphApi.GraphSearch("a", "h", GraphData.Algorithm.BIBFS).path.size());
+        assertEquals(7, graphApi.GraphSearch("b", "h", GraphData.Algorithm.BIBFS).path.size());
+        assertNull(graphApi.GraphSearch("h", "e", GraphData.Algorithm.BIBFS));
+    }
+
+    @Test
+    @DisplayName("Test int-id search engine of compact storage")
+    public void TestCompactGraphSearch() {
+        graphApi.parseGraph(CANVAS_GRAPH_PATH);
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        assertTrue(compactApi.parseGraph(GRAPH_PATH));
+        assertTrue(compactApi.parseGraph(CANVAS_GRAPH_PATH));
+        // Repeated queries share the same scratch arrays, so every answer must be independent of the last
+        for (int round = 0; round < 2; round++) {
+            for (String src : graphApi.getGraph().vertexSet()) {
+                for (String dst : graphApi.getGraph().vertexSet()) {
+                    Path expected = graphApi.GraphSearch(src, dst, GraphData.Algorithm.BFS);
+                    Path actual = compactApi.GraphSearch(src, dst, GraphData.Algorithm.BFS);
+                    assertEquals(expected == null ? -1 : expected.path.size(), actual == null ? -1 : actual.path.size());
+                    assertEquals(expected == null, compactApi.GraphSearch(src, dst, GraphData.Algorithm.DFS) == null);
+                    Path walk = compactApi.GraphSearch(src, dst, GraphData.Algorithm.RWS);
+                    assertEquals(graphApi.GraphSearch(src, dst, GraphData.Algorithm.RWS) == null, walk == null);
+                }
+            }
+        }
+        assertNull(compactApi.GraphSearch("C", "X", GraphData.Algorithm.BFS));
+        assertNull(compactApi.GraphSearch("X", "C", GraphData.Algorithm.DFS));
+        assertTrue(compactApi.addNode("X"));
+        assertTrue(compactApi.addEdge("h", "X"));
+        assertEquals(List.of("X", "h"), compactApi.GraphSearch("h", "X", GraphData.Algorithm.RWS).path);
+    }
+
+    @Test
+    @DisplayName("Test searches running while another thread edits the graph")
+    public void TestConcurrentSearch() throws Exception {
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        int n = 2000;
+        for (int i = 0; i < n; i++) {
+            compactApi.addNode("n" + i);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            // The only edges form the chain n0 -> n1 -> ..., so any path found to nk has k + 1 nodes
+            Future<?> writer = pool.submit(() -> {
+                for (int i = 1; i < n; i++) {
+                    assertTrue(compactApi.addEdge("n" + (i - 1), "n" + i));
+                    // The writer's own searches always see its edits
+                    if (i % 50 == 0) {
+                        assertEquals(i + 1, compactApi.GraphSearch("n0", "n" + i, GraphData.Algorithm.BFS).path.size());
+                    }
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                int seed = r;
+                readers.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    while (!writer.isDone()) {
+                        int k = random.nextInt(n);
+                        // Other readers may get the snapshot before the latest edits, never a torn one
+                        GraphData.Algorithm algo = GraphData.Algorithm.values()[random.nextInt(GraphData.Algorithm.values().length)];
+                        Path path = compactApi.GraphSearch("n0", "n" + k, algo);
+                        if (path != null) {
+                            assertEquals(k + 1, path.path.size());
+                        }
+                    }
+                }));
+            }
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(n, compactApi.GraphSearch("n0", "n" + (n - 1), GraphData.Algorithm.BFS).path.size());
+        assertEquals(n - 1, compactApi.getGraph().edgeSet().size());
+        // Searches handed to other threads see the edits of the thread that started them
+        assertTrue(compactApi.addEdge("n" + (n - 1), "n0"));
+        GraphData.Query back = new GraphData.Query("n" + (n - 1), "n0");
+        assertEquals(2, compactApi.searchAll(List.of(back), GraphData.Algorithm.BFS).get(0).join().path.size());
+    }
+
+    @Test
+    @DisplayName("Test batch search on virtual threads")
+    public void TestSearchAll() throws Exception {
+        graphApi.parseGraph(CANVAS_GRAPH_PATH);
+        List<GraphData.Query> queries = new ArrayList<>();
+        for (String src : graphApi.getGraph().vertexSet()) {
+            for (String dst : graphApi.getGraph().vertexSet()) {
+                queries.add(new GraphData.Query(src, dst));
+            }
+        }
+        List<CompletableFuture<Path>> results = graphApi.searchAll(queries, GraphData.Algorithm.BFS);
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            Path expected = graphApi.GraphSearch(queries.get(i).source(), queries.get(i).destination(), GraphData.Algorithm.BFS);
+            Path actual = results.get(i).get();
+            assertEquals(expected == null ? null : expected.path, actual == null ? null : actual.path);
+        }
+        // Unknown source: jgrapht storage rejects the vertex, the future carries the error
+        CompletableFuture<Path> missing = graphApi.searchAll(List.of(new GraphData.Query("X", "A")), GraphData.Algorithm.DFS).get(0);
+        assertThrows(ExecutionException.class, missing::get);
+        // An Error thrown by a search completes its future too instead of leaving it pending
+        graphApi.setSearchListener(metrics -> {
+            throw new StackOverflowError();
+        });
+        CompletableFuture<Path> failed = graphApi.searchAll(List.of(new GraphData.Query("A", "B")), GraphData.Algorithm.BFS).get(0);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        graphApi.setSearchListener(null);
+        assertTrue(error.getCause() instanceof StackOverflowError);
+    }
+
+    @Test
+    @DisplayName("Test batch search timeouts and cancellation")
+    public void TestSearchAllTimeout() throws Exception {
+        GraphData chainApi = new GraphData();
+        int n = 50_000;
+        List<String> labels = new ArrayList<>();
+        String[][] edges = new String[n - 1][];
+        for (int i = 0; i < n; i++) {
+            labels.add("n" + i);
+            if (i > 0) {
+                edges[i - 1] = new String[]{"n" + (i - 1), "n" + i};
+            }
+        }
+        chainApi.addNodes(labels);
+        chainApi.addEdges(edges);
+        List<GraphData.Query> queries = List.of(new GraphData.Query("n0", "n" + (n - 1)));
+        CompletableFuture<Path> timed = chainApi.searchAll(queries, GraphData.Algorithm.BFS, Duration.ofNanos(1)).get(0);
+        ExecutionException error = assertThrows(ExecutionException.class, timed::get);
+        assertTrue(error.getCause() instanceof TimeoutException);
+
+        CompletableFuture<Path> cancelled = chainApi.searchAll(queries, GraphData.Algorithm.DFS).get(0);
+        cancelled.cancel(true);
+        assertTrue(cancelled.isCancelled());
+        assertEquals(n, chainApi.searchAll(queries, GraphData.Algorithm.DFS).get(0).get().path.size());
+    }
+
+    @Test
+    @DisplayName("Test multi-source reachability")
+    public void TestReachableFrom() {
+        ReachableSet reachable = graphApi.reachableFrom(List.of("A", "X"));
+        assertEquals(Set.of("A", "B", "C", "D"), new HashSet<>(reachable.labels()));
+        assertEquals(0, reachable.distance("A"));
+        assertEquals(1, reachable.distance("C"));
+        assertEquals(1, reachable.depth());
+        assertEquals(-1, reachable.distance("X"));
+
+        // A hub with many out-edges makes the middle levels run bottom-up
+        int n = 3000;
+        Random random = new Random(11);
+        GraphData hubApi = new GraphData();
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            labels.add("n" + i);
+        }
+        String[][] edges = new String[4 * n][];
+        for (int i = 0; i < edges.length; i++) {
+            int src = i < n / 2 ? 0 : random.nextInt(n);
+            edges[i] = new String[]{"n" + src, "n" + random.nextInt(n)};
+        }
+        for (GraphData api : List.of(hubApi, compactApi)) {
+            api.addNodes(labels);
+            api.addEdges(edges);
+        }
+
+        // Expected distances from a plain multi-source BFS over jgrapht successors
+        Map<String, Integer> expected = new HashMap<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        for (String root : List.of("n0", "n7")) {
+            expected.put(root, 0);
+            queue.add(root);
+        }
+        while (!queue.isEmpty()) {
+            String u = queue.poll();
+            for (DefaultEdge e : hubApi.getGraph().outgoingEdgesOf(u)) {
+                String v = hubApi.getGraph().getEdgeTarget(e);
+                if (!expected.containsKey(v)) {
+                    expected.put(v, expected.get(u) + 1);
+                    queue.add(v);
+                }
+            }
+        }
+        for (GraphData api : List.of(hubApi, compactApi)) {
+            reachable = api.reachableFrom(List.of("n0", "n7"));
+            assertEquals(expected.size(), reachable.size());
+            assertEquals(Collections.max(expected.values()), reachable.depth());
+            assertEquals(Set.of("n0", "n7"), new HashSet<>(reachable.labelsAt(0)));
+            for (String label : labels) {
+                assertEquals(expected.getOrDefault(label, -1), reachable.distance(label));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test parallel bfs graph search api")
+    public void TestGraphSearchPBFS() {
+        assertEquals(List.of("D", "A", "C"), graphApi.GraphSearch("C", "D", GraphData.Algorithm.PBFS).path);
+        assertNull(graphApi.GraphSearch("C", "X", GraphData.Algorithm.PBFS));
+
+        // Wide levels get split across workers; paths must be as short as sequential BFS finds
+        int n = 20_000;
+        Random random = new Random(5);
+        GraphData compactApi = new GraphData(GraphData.Storage.COMPACT);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            labels.add("n" + i);
+        }
+        String[][] edges = new String[3 * n][];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new String[]{"n" + random.nextInt(n), "n" + random.nextInt(n)};
+        }
+        compactApi.addNodes(labels);
+        compactApi.addEdges(edges);
+        for (int q = 0; q < 20; q++) {
+            String src = "n" + random.nextInt(n);
+            String dst = "n" + random.nextInt(n);
+            Path expected = compactApi.GraphSearch(src, dst, GraphData.Algorithm.BFS);
+            Path actual = compactApi.GraphSearch(src, dst, GraphData.Algorithm.PBFS);
+            assertEquals(expected == null, actual == null);
+            if (actual != null) {
+                assertEquals(expected.path.size(), actual.path.size());
+                for (int i = 0; i + 1 < actual.path.size(); i++) {
+                    String a = actual.path.get(i);
+                    String b = actual.path.get(i + 1);
+                    assertTrue(compactApi.getGraph().containsEdge(a, b) || compactApi.getGraph().containsEdge(b, a));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test weighted shortest paths with dijkstra and a*")
+    public void TestGraphSearchWeighted() throws Exception {
+        java.nio.file.Path dot = Files.createTempFile("weighted", ".dot");
+        Files.writeString(dot, "digraph G {\n  a -> b [weight=1];\n  b -> d [weight=1.5];\n"
+                + "  a -> c [weight=0.5];\n  c -> d [weight=5];\n  a -> d [weight=10];\n}\n");
+        java.nio.file.Path snap = Files.createTempFile("weighted", ".snap");
+        java.nio.file.Path out = Files.createTempFile("weighted", ".dot");
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            for (int parser = 0; parser < 3; parser++) {
+                GraphData weighted = new GraphData(storage);
+                assertTrue(parser == 0 ? weighted.parseGraph(dot.toString())
+                        : parser == 1 ? weighted.parseGraphStreaming(dot.toString())
+                        : weighted.parseGraphParallel(dot.toString(), 2));
+                assertEquals(10, weighted.getGraph().getEdgeWeight(weighted.getGraph().getEdge("a", "d")));
+                assertEquals(List.of("d", "a"), weighted.GraphSearch("a", "d", GraphData.Algorithm.BFS).path);
+                Path path = weighted.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA);
+                assertEquals(List.of("d", "b", "a"), path.path);
+                assertEquals(2.5, path.getCost());
+                path = weighted.GraphSearch("a", "d", label -> label.equals("d") ? 0 : 1);
+                assertEquals(List.of("d", "b", "a"), path.path);
+                assertEquals(2.5, path.getCost());
+                // Directed: nothing leads back to a
+                assertNull(weighted.GraphSearch("d", "a", GraphData.Algorithm.DIJKSTRA));
+            }
+
+            GraphData weighted = new GraphData(storage);
+            assertTrue(weighted.parseGraph(dot.toString()));
+            // The int-id copy that default storage keeps for Dijkstra is rebuilt after the edit
+            assertEquals(2.5, weighted.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA).getCost());
+            assertTrue(weighted.addEdge("c", "b", 0.25));
+            assertFalse(weighted.addEdge("b", "a", -1));
+            assertFalse(weighted.getGraph().containsEdge("b", "a"));
+            assertEquals(List.of("d", "b", "c", "a"), weighted.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA).path);
+            assertEquals(2.25, weighted.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA).getCost());
+
+            assertTrue(weighted.saveSnapshot(snap.toString()));
+            assertTrue(weighted.outputDOTGraph(out.toString()));
+            for (GraphData.Storage target : GraphData.Storage.values()) {
+                GraphData loaded = new GraphData(target);
+                assertTrue(loaded.loadSnapshot(snap.toString()));
+                assertEquals(2.25, loaded.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA).getCost());
+                GraphData exported = new GraphData(target);
+                assertTrue(exported.parseGraph(out.toString()));
+                assertEquals(2.25, exported.GraphSearch("a", "d", GraphData.Algorithm.DIJKSTRA).getCost());
+            }
+        }
+
+        // Unweighted graphs cost one per edge
+        assertEquals(1, graphApi.GraphSearch("A", "D", GraphData.Algorithm.DIJKSTRA).getCost());
+        Files.writeString(dot, "digraph G {\n  a -> b [weight=-2];\n}\n");
+        assertFalse(new GraphData().parseGraph(dot.toString()));
+        assertFalse(new GraphData(GraphData.Storage.COMPACT).parseGraphStreaming(dot.toString()));
+        Files.delete(dot);
+        Files.delete(snap);
+        Files.delete(out);
+    }
+
+    @Test
+    @DisplayName("Test reachability index")
+    public void TestIsReachable() throws Exception {
+        assertTrue(graphApi.isReachable("A", "D"));
+        assertTrue(graphApi.isReachable("D", "D"));
+        assertFalse(graphApi.isReachable("D", "A"));
+        assertFalse(graphApi.isReachable("A", "X"));
+        // Edits invalidate the index
+        graphApi.addEdge("D", "A");
+        assertTrue(graphApi.isReachable("B", "B"));
+        assertTrue(graphApi.isReachable("D", "C"));
+        graphApi.addEdge("D", "C");
+        assertTrue(graphApi.isReachable("A", "C"));
+        graphApi.removeEdge("D", "A");
+        assertTrue(graphApi.isReachable("D", "C"));
+        assertFalse(graphApi.isReachable("C", "D"));
+        graphApi.removeNode("C");
+        assertFalse(graphApi.isReachable("D", "C"));
+
+        // Matches a traversal on random graphs with cycles
+        int n = 2_000;
+        Random random = new Random(11);
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData randomApi = new GraphData(storage);
+            List<String> labels = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                labels.add("n" + i);
+            }
+            String[][] edges = new String[n + n / 4][];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = new String[]{"n" + random.nextInt(n), "n" + random.nextInt(n)};
+            }
+            randomApi.addNodes(labels);
+            randomApi.addEdges(edges);
+            assertTrue(randomApi.reachabilityIndex().componentCount() < n);
+            for (int q = 0; q < 50; q++) {
+                String src = "n" + random.nextInt(n);
+                ReachableSet reachable = randomApi.reachableFrom(List.of(src));
+                for (int k = 0; k < 40; k++) {
+                    String dst = "n" + random.nextInt(n);
+                    assertEquals(reachable.contains(dst), randomApi.isReachable(src, dst), src + " -> " + dst);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test path cache hits, eviction and invalidation")
+    public void TestPathCache() throws Exception {
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData cachedApi = new GraphData(storage);
+            assertTrue(cachedApi.parseGraph(GRAPH_PATH));
+            assertNull(cachedApi.pathCacheStats());
+            cachedApi.enablePathCache(2);
+            Path first = cachedApi.GraphSearch("C", "D", GraphData.Algorithm.BFS);
+            first.printPath();
+            // Hits are copies, unaffected by printPath reversing the first result
+            assertEquals(List.of("D", "A", "C"), cachedApi.GraphSearch("C", "D", GraphData.Algorithm.BFS).path);
+            assertNull(cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS));
+            assertNull(cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS));
+            PathCache.Stats stats = cachedApi.pathCacheStats();
+            assertEquals(2, stats.hits());
+            assertEquals(2, stats.misses());
+            assertEquals(2, stats.size());
+
+            cachedApi.GraphSearch("A", "B", GraphData.Algorithm.DFS);
+            assertEquals(1, cachedApi.pathCacheStats().evictions());
+            cachedApi.GraphSearch("A", "B", GraphData.Algorithm.RWS);
+            assertEquals(2, cachedApi.pathCacheStats().size());
+
+            // Edits drop every entry
+            cachedApi.removeEdge("A", "D");
+            assertNull(cachedApi.GraphSearch("A", "D", GraphData.Algorithm.DIJKSTRA));
+            assertEquals(1, cachedApi.pathCacheStats().invalidations());
+            cachedApi.addNode("X");
+            cachedApi.addEdge("C", "X");
+            assertEquals(List.of("X", "C"), cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS).path);
+            List<CompletableFuture<Path>> results = cachedApi.searchAll(
+                    List.of(new GraphData.Query("C", "X"), new GraphData.Query("A", "D")), GraphData.Algorithm.BFS);
+            assertEquals(List.of("X", "C"), results.get(0).get().path);
+            assertNull(results.get(1).get());
+            assertTrue(cachedApi.pathCacheStats().hits() >= 3);
+
+            // Batches and imports that change nothing keep the cache; the first import brings
+            // back A -> D, a second one adds nothing
+            assertTrue(cachedApi.parseGraphStreaming(GRAPH_PATH));
+            cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS);
+            long invalidations = cachedApi.pathCacheStats().invalidations();
+            assertArrayEquals(new boolean[]{false}, cachedApi.addNodes(List.of("X")));
+            assertArrayEquals(new boolean[]{false, false}, cachedApi.addEdges(new String[][]{{"C", "X"}, {"C", "Q"}}));
+            assertArrayEquals(new boolean[]{false}, cachedApi.removeNodes(List.of("Q")));
+            assertTrue(cachedApi.parseGraphStreaming(GRAPH_PATH));
+            assertFalse(cachedApi.parseGraph(GRAPH_PATH + ".missing"));
+            assertEquals(List.of("X", "C"), cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS).path);
+            assertEquals(invalidations, cachedApi.pathCacheStats().invalidations());
+            assertArrayEquals(new boolean[]{true}, cachedApi.addNodes(List.of("Y")));
+            cachedApi.GraphSearch("C", "X", GraphData.Algorithm.BFS);
+            assertEquals(invalidations + 1, cachedApi.pathCacheStats().invalidations());
+            cachedApi.disablePathCache();
+            assertNull(cachedApi.pathCacheStats());
+        }
+    }
+
+    @Test
+    @DisplayName("Test seeded and parallel random walk search")
+    public void TestRandomWalkSearch() {
+        int n = 5_000;
+        Random random = new Random(13);
+        String[][] edges = new String[4 * n][];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new String[]{"n" + random.nextInt(n), "n" + random.nextInt(n)};
+        }
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            labels.add("n" + i);
+        }
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData walkApi = new GraphData(storage);
+            walkApi.addNodes(labels);
+            walkApi.addEdges(edges);
+            for (int q = 0; q < 10; q++) {
+                String src = "n" + random.nextInt(n);
+                String dst = "n" + random.nextInt(n);
+                Path first = walkApi.RandomWalkSearch(src, dst, q);
+                Path again = walkApi.RandomWalkSearch(src, dst, q);
+                Path parallel = walkApi.RandomWalkSearch(src, dst, q, 4);
+                boolean reachable = walkApi.reachableFrom(List.of(src)).contains(dst);
+                assertEquals(reachable, first != null);
+                assertEquals(reachable, parallel != null);
+                if (reachable) {
+                    assertEquals(first.path, again.path);
+                    for (Path path : List.of(first, parallel)) {
+                        assertEquals(dst, path.path.get(0));
+                        assertEquals(src, path.path.get(path.path.size() - 1));
+                        for (int i = 0; i + 1 < path.path.size(); i++) {
+                            assertTrue(walkApi.getGraph().containsEdge(path.path.get(i + 1), path.path.get(i)));
+                        }
+                    }
+                }
+            }
+            assertNull(walkApi.RandomWalkSearch("n0", "missing", 1, 3));
+        }
+        // Bad walker counts are reported like other bad input
+        assertNull(graphApi.RandomWalkSearch("A", "D", 1, 0));
+        assertNull(graphApi.RandomWalkSearch("A", "D", 1, -2));
+    }
+
+    @Test
+    @DisplayName("Test search listener metrics and latency histogram")
+    public void TestSearchMetrics() throws Exception {
+        List<SearchMetrics> seen = new CopyOnWriteArrayList<>();
+        graphApi.setSearchListener(seen::add);
+        graphApi.GraphSearch("C", "D", GraphData.Algorithm.BFS);
+        graphApi.GraphSearch("D", "C", GraphData.Algorithm.DIJKSTRA);
+        graphApi.searchAll(List.of(new GraphData.Query("A", "B")), GraphData.Algorithm.DFS).get(0).get();
+        assertEquals(3, seen.size());
+        SearchMetrics bfs = seen.get(0);
+        assertEquals(GraphData.Algorithm.BFS, bfs.algorithm());
+        assertTrue(bfs.found());
+        // C, A and B are expanded (1 + 3 + 1 edges) before D is dequeued
+        assertEquals(3, bfs.nodesExpanded());
+        assertEquals(5, bfs.edgesScanned());
+        assertEquals(2, bfs.peakFrontier());
+        assertTrue(bfs.wallNanos() > 0);
+        assertFalse(seen.get(1).found());
+        assertEquals(GraphData.Algorithm.DFS, seen.get(2).algorithm());
+
+        SearchHistogram histogram = new SearchHistogram();
+        graphApi.setSearchListener(histogram);
+        for (int i = 0; i < 100; i++) {
+            graphApi.GraphSearch("C", "D", GraphData.Algorithm.BIBFS);
+        }
+        assertEquals(100, histogram.count(GraphData.Algorithm.BIBFS));
+        assertEquals(0, histogram.count(GraphData.Algorithm.BFS));
+        long p50 = histogram.percentile(GraphData.Algorithm.BIBFS, 50);
+        long p99 = histogram.percentile(GraphData.Algorithm.BIBFS, 99);
+        assertTrue(p50 > 0 && p50 <= p99);
+        assertTrue(histogram.percentile(GraphData.Algorithm.BIBFS, 100) >= histogram.slowest(GraphData.Algorithm.BIBFS).wallNanos());
+        assertTrue(histogram.report().startsWith("BIBFS: 100 searches"));
+        for (long v : new long[]{0, 7, 8, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int b = SearchHistogram.bucket(v);
+            assertTrue(v <= SearchHistogram.upperBound(b) && (b == 0 || v > SearchHistogram.upperBound(b - 1)));
+        }
+        histogram.reset();
+        assertEquals(0, histogram.count(GraphData.Algorithm.BIBFS));
+        graphApi.setSearchListener(null);
+    }
+
+    @Test
+    @DisplayName("Test graphics formats, tiles and layout reuse")
+    public void TestOutputGraphics() throws Exception {
+        String path = Files.createTempDirectory("graphics") + "/";
+        // The format is honoured: a JPEG starts with FF D8 rather than the PNG signature
+        assertTrue(graphApi.outputGraphics(path, "jpg"));
+        byte[] jpg = Files.readAllBytes(Paths.get(path + "gen_graph.jpg"));
+        assertEquals((byte) 0xFF, jpg[0]);
+        assertEquals((byte) 0xD8, jpg[1]);
+        assertFalse(graphApi.outputGraphics(path, "nosuchformat"));
+
+        assertTrue(graphApi.outputGraphics(path, "svg"));
+        String svg = Files.readString(Paths.get(path + "gen_graph.svg"));
+        assertTrue(svg.startsWith("<svg"));
+        assertTrue(svg.contains("<title>A</title>"));
+
+        assertTrue(graphApi.outputGraphics(path, "png", 2));
+        for (String tile : new String[]{"0_0", "0_1", "1_0", "1_1"}) {
+            assertTrue(Files.size(Paths.get(path + "gen_graph_" + tile + ".png")) > 0);
+        }
+
+        // Unchanged graphs reuse the layout; edited ones start from it
+        ForceLayout first = graphApi.layout();
+        assertSame(first, graphApi.layout());
+        graphApi.addNode("E");
+        graphApi.addEdge("E", "A");
+        ForceLayout second = graphApi.layout();
+        assertNotSame(first, second);
+        int e = second.graph.idOf("E");
+        assertFalse(Double.isNaN(second.x[e]) || Double.isNaN(second.y[e]));
+    }
+
+    @Test
+    @DisplayName("Test mutation log recovery and compaction")
+    public void TestMutationLog() throws Exception {
+        String dir = Files.createTempDirectory("wal").toString();
+        assertTrue(graphApi.enableMutationLog(dir));
+        graphApi.addNode("E");
+        graphApi.addEdge("E", "A", 2.5);
+        graphApi.addEdges(new String[][]{{"B", "C"}, {"C", "D"}});
+        graphApi.removeEdge("A", "B");
+        graphApi.removeNodes(List.of("D"));
+        // Writers on several threads share fsyncs
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 100; i++) {
+            String label = "n" + i;
+            executor.submit(() -> graphApi.addNode(label));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        Set<String> expected = contents(graphApi);
+        assertTrue(graphApi.disableMutationLog());
+
+        // A crash mid-append leaves a torn record, which recovery drops
+        String newest = Arrays.stream(new File(dir).list()).filter(f -> f.endsWith(".log"))
+                .max(Comparator.naturalOrder()).get();
+        Files.write(Paths.get(dir, newest), new byte[]{9, 3, 1}, StandardOpenOption.APPEND);
+
+        GraphData recovered = new GraphData(GraphData.Storage.COMPACT);
+        assertTrue(recovered.enableMutationLog(dir));
+        assertEquals(expected, contents(recovered));
+        assertEquals(2.5, recovered.getGraph().getEdgeWeight(recovered.getGraph().getEdge("E", "A")));
+        recovered.addEdge("n1", "n2");
+        assertTrue(recovered.compactMutationLog());
+        recovered.removeNode("n3");
+        expected = contents(recovered);
+        assertTrue(recovered.disableMutationLog());
+        // One generation left: its snapshot and the log since
+        assertEquals(2, new File(dir).list().length);
+
+        GraphData again = new GraphData();
+        assertTrue(again.enableMutationLog(dir));
+        assertEquals(expected, contents(again));
+        assertFalse(again.enableMutationLog(dir));
+        assertTrue(again.disableMutationLog());
+        assertFalse(again.disableMutationLog());
+    }
+
+    @Test
+    @DisplayName("Test mutation log write errors are reported, not thrown")
+    public void TestMutationLogFailure() throws Exception {
+        // Every write to /dev/full fails with "No space left on device"
+        assumeTrue(new File("/dev/full").exists());
+        String dir = Files.createTempDirectory("wal").toString();
+        assertTrue(graphApi.enableMutationLog(dir));
+        // Enabling wrote generation 1; the log of generation 2 cannot be written
+        Files.createSymbolicLink(Paths.get(dir, "graph-2.log"), Paths.get("/dev/full"));
+        assertTrue(graphApi.addNode("E"));
+        assertFalse(graphApi.compactMutationLog());
+        // Edits carry on into the generation 1 log, and compaction works once the disk does
+        assertTrue(graphApi.addEdge("E", "A"));
+        assertTrue(graphApi.compactMutationLog());
+        assertTrue(graphApi.addEdge("A", "E"));
+        Set<String> expected = contents(graphApi);
+        assertTrue(graphApi.disableMutationLog());
+
+        GraphData recovered = new GraphData();
+        assertTrue(recovered.enableMutationLog(dir));
+        assertEquals(expected, contents(recovered));
+        assertTrue(recovered.disableMutationLog());
+    }
+
+    @Test
+    @DisplayName("Test components, condensation, topological order and cycles")
+    public void TestGraphAnalytics() {
+        assertEquals("A", graphApi.topologicalOrder().get(0));
+        assertNull(graphApi.findCycle());
+
+        graphApi.addEdge("B", "A");
+        List<String> cycle = graphApi.findCycle();
+        assertEquals(3, cycle.size());
+        assertEquals(cycle.get(0), cycle.get(2));
+        assertEquals(Set.of("A", "B"), Set.copyOf(cycle));
+        assertNull(graphApi.topologicalOrder());
+        List<Set<String>> components = graphApi.stronglyConnectedComponents();
+        assertEquals(3, components.size());
+        // Sinks first, so the component of A and B comes last
+        assertEquals(Set.of("A", "B"), components.get(2));
+        assertEquals(Set.copyOf(components), Set.copyOf(graphApi.stronglyConnectedComponentsParallel()));
+        GraphData condensed = graphApi.condense();
+        assertEquals(Set.of("A", "C", "D"), condensed.getGraph().vertexSet());
+        assertEquals(2, condensed.getGraph().edgeSet().size());
+        assertEquals("A", condensed.topologicalOrder().get(0));
+
+        // A chain far deeper than any call stack, closed into one cycle, plus random chords
+        GraphData big = new GraphData(GraphData.Storage.COMPACT);
+        int n = 200_000;
+        String[] labels = new String[n];
+        for (int v = 0; v < n; v++) {
+            labels[v] = "v" + v;
+        }
+        big.addNodes(List.of(labels));
+        String[][] chain = new String[n - 1][];
+        for (int v = 0; v + 1 < n; v++) {
+            chain[v] = new String[]{labels[v], labels[v + 1]};
+        }
+        big.addEdges(chain);
+        assertEquals(n, big.topologicalOrder().size());
+        assertEquals(n, big.stronglyConnectedComponents().size());
+        Random random = new Random(7);
+        String[][] chords = new String[n / 2][];
+        for (int i = 0; i < chords.length; i++) {
+            int u = random.nextInt(n);
+            int v = random.nextInt(n / 2);
+            chords[i] = new String[]{labels[u], labels[v]};
+        }
+        big.addEdges(chords);
+        big.addEdge(labels[n - 1], labels[n / 2]);
+        List<Set<String>> sequential = big.stronglyConnectedComponents();
+        assertEquals(Set.copyOf(sequential), Set.copyOf(big.stronglyConnectedComponentsParallel()));
+        List<String> bigCycle = big.findCycle();
+        assertEquals(bigCycle.get(0), bigCycle.get(bigCycle.size() - 1));
+        for (int i = 0; i + 1 < bigCycle.size(); i++) {
+            assertTrue(big.getGraph().containsEdge(bigCycle.get(i), bigCycle.get(i + 1)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test pagerank and betweenness against jgrapht")
+    public void TestRanking() throws Exception {
+        GraphData graph = new GraphData(GraphData.Storage.COMPACT);
+        Random random = new Random(11);
+        int n = 300;
+        for (int v = 0; v < n; v++) {
+            graph.addNode("v" + v);
+        }
+        for (int i = 0; i < 3 * n; i++) {
+            graph.addEdge("v" + random.nextInt(n), "v" + random.nextInt(n / 3));
+        }
+        // Matches jgrapht's single-threaded implementations
+        Ranking rank = graph.pageRank(0.85, 1e-12, 1000);
+        assertTrue(rank.converged());
+        Map<String, Double> expected = new PageRank<>(graph.getGraph(), 0.85, 1000, 1e-12).getScores();
+        double total = 0;
+        for (int v = 0; v < n; v++) {
+            assertEquals(expected.get("v" + v), rank.score("v" + v), 1e-9);
+            total += rank.score("v" + v);
+        }
+        assertEquals(1, total, 1e-9);
+        List<String> top = rank.top(5);
+        assertEquals(5, top.size());
+        assertTrue(rank.score(top.get(0)) >= rank.score(top.get(4)));
+
+        Map<String, Double> exact = new BetweennessCentrality<>(graph.getGraph()).getScores();
+        Ranking betweenness = graph.betweenness(n, 1);
+        assertTrue(betweenness.converged());
+        for (int v = 0; v < n; v++) {
+            assertEquals(exact.get("v" + v), betweenness.score("v" + v), 1e-6);
+        }
+        // Sources are chunked the same way on any pool, so one thread gives the same bits
+        ForkJoinPool single = new ForkJoinPool(1);
+        Ranking serial = single.submit(() -> graph.betweenness(n, 1)).get();
+        single.shutdown();
+        for (int v = 0; v < n; v++) {
+            assertEquals(betweenness.score("v" + v), serial.score("v" + v), 0);
+        }
+        // Sampling half the sources keeps the most central node near the top
+        Ranking sampled = graph.betweenness(n / 2, 1);
+        assertFalse(sampled.converged());
+        assertTrue(sampled.top(10).contains(betweenness.top(1).get(0)));
+
+        // Personalized rank stays around the seed: dangling B, C and D teleport back to A
+        Ranking personal = graphApi.personalizedPageRank(List.of("A"));
+        assertTrue(personal.score("A") > personal.score("B"));
+        assertEquals(personal.score("B"), personal.score("C"), 1e-9);
+        assertNull(graphApi.personalizedPageRank(List.of("Z")));
+        assertNull(graphApi.pageRank(1.5, 1e-6, 10));
+    }
+
+    @Test
+    @DisplayName("Test k shortest paths and simple path streams")
+    public void TestPathStreams() {
+        GraphData graph = new GraphData(GraphData.Storage.COMPACT);
+        Random random = new Random(5);
+        int n = 60;
+        for (int v = 0; v < n; v++) {
+            graph.addNode("v" + v);
+        }
+        for (int i = 0; i < 4 * n; i++) {
+            graph.addEdge("v" + random.nextInt(n), "v" + random.nextInt(n));
+        }
+        // Same costs, in the same order, as jgrapht's Yen on the unweighted graph
+        List<GraphPath<String, DefaultEdge>> expected =
+                new YenKShortestPath<>(graph.getGraph()).getPaths("v0", "v1", 40);
+        List<Path> paths = graph.kShortestPaths("v0", "v1").limit(40).toList();
+        assertEquals(expected.size(), paths.size());
+        Set<List<String>> distinct = new HashSet<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            assertEquals(expected.get(i).getLength(), path.getCost());
+            assertEquals(path.path.size() - 1, (int) path.getCost());
+            assertEquals("v0", path.path.get(path.path.size() - 1));
+            assertEquals(new HashSet<>(path.path).size(), path.path.size());
+            assertTrue(distinct.add(path.path));
+        }
+
+        // Every simple path within the depth bound, as jgrapht's AllDirectedPaths finds them
+        Set<List<String>> all = new HashSet<>();
+        for (GraphPath<String, DefaultEdge> path :
+                new AllDirectedPaths<>(graph.getGraph()).getAllPaths("v0", "v1", true, 8)) {
+            all.add(path.getVertexList());
+        }
+        Set<List<String>> simple = new HashSet<>();
+        graph.allSimplePaths("v0", "v1", 8, Long.MAX_VALUE).forEach(path -> {
+            List<String> nodes = new ArrayList<>(path.path);
+            Collections.reverse(nodes);
+            simple.add(nodes);
+        });
+        assertEquals(all, simple);
+        assertTrue(all.size() > 10);
+        assertEquals(10, graph.allSimplePaths("v0", "v1", 8, 10).count());
+
+        // Weighted: the direct edge is the third cheapest route
+        GraphData weighted = new GraphData(GraphData.Storage.COMPACT);
+        weighted.addNodes(new String[] {"a", "b", "c", "d"});
+        weighted.addEdge("a", "b", 1);
+        weighted.addEdge("b", "d", 1);
+        weighted.addEdge("a", "c", 1);
+        weighted.addEdge("c", "d", 2);
+        weighted.addEdge("a", "d", 5);
+        List<Path> routes = weighted.kShortestPaths("a", "d").toList();
+        assertEquals(3, routes.size());
+        assertEquals(List.of(2.0, 3.0, 5.0), routes.stream().map(Path::getCost).toList());
+        assertEquals(List.of("d", "a"), routes.get(2).path);
+        assertEquals(List.of(List.of("a")), weighted.allSimplePaths("a", "a", 3, 10).map(p -> p.path).toList());
+        assertEquals(0, graphApi.kShortestPaths("A", "Z").count());
+        assertEquals(0, graphApi.allSimplePaths("Z", "A", 3, 10).count());
+    }
+
+    @Test
+    @DisplayName("Test k-hop neighborhood extraction and limits")
+    public void TestNeighborhood() throws Exception {
+        GraphData graph = new GraphData(GraphData.Storage.COMPACT);
+        Random random = new Random(8);
+        int n = 200;
+        for (int v = 0; v < n; v++) {
+            graph.addNode("v" + v);
+        }
+        for (int i = 0; i < 2 * n; i++) {
+            graph.addEdge("v" + random.nextInt(n), "v" + random.nextInt(n), 1 + random.nextInt(5));
+        }
+        // Same nodes as a bounded BFS over jgrapht, ignoring edge directions
+        Graph<String, DefaultEdge> undirected = new AsUndirectedGraph<>(graph.getGraph());
+        Set<String> expected = new HashSet<>(List.of("v0", "v1"));
+        Set<String> level = new HashSet<>(expected);
+        for (int hop = 0; hop < 2; hop++) {
+            Set<String> next = new HashSet<>();
+            for (String u : level) {
+                for (String v : Graphs.neighborListOf(undirected, u)) {
+                    if (expected.add(v)) {
+                        next.add(v);
+                    }
+                }
+            }
+            level = next;
+        }
+        GraphData both = graph.neighborhood(List.of("v0", "v1", "missing"), 2, GraphData.Direction.BOTH);
+        assertEquals(expected, both.getGraph().vertexSet());
+        // Induced: every edge between taken nodes, with its weight
+        for (DefaultEdge e : graph.getGraph().edgeSet()) {
+            String s = graph.getGraph().getEdgeSource(e);
+            String t = graph.getGraph().getEdgeTarget(e);
+            if (expected.contains(s) && expected.contains(t)) {
+                DefaultEdge copy = both.getGraph().getEdge(s, t);
+                assertNotNull(copy);
+                assertEquals(graph.getGraph().getEdgeWeight(e), both.getGraph().getEdgeWeight(copy));
+            }
+        }
+        assertTrue(both.addNode("extra"));
+        assertFalse(graph.getGraph().containsVertex("extra"));
+        both.removeNode("extra");
+
+        // Read from a mapped snapshot, then from jgrapht in default storage: same nodes, edges and weights
+        java.nio.file.Path file = Files.createTempFile("neighborhood", ".snap");
+        assertTrue(graph.saveSnapshot(file.toString()));
+        for (GraphData.Storage storage : GraphData.Storage.values()) {
+            GraphData copy = new GraphData(storage);
+            assertTrue(copy.loadSnapshot(file.toString()));
+            for (int round = 0; round < 2; round++) {
+                GraphData part = copy.neighborhood(List.of("v0", "v1", "missing"), 2, GraphData.Direction.BOTH);
+                assertEquals(contents(both), contents(part));
+                assertEquals(edgeWeights(both), edgeWeights(part));
+                // Builds the storage from the file
+                copy.addNode("fresh");
+            }
+        }
+        Files.delete(file);
+
+        // Celebrity: a hub with many followers only adds maxFanOut of them
+        GraphData star = new GraphData();
+        star.addNode("hub");
+        for (int i = 0; i < 100; i++) {
+            star.addNode("f" + i);
+            star.addEdge("f" + i, "hub");
+        }
+        star.addNode("x");
+        star.addEdge("x", "hub");
+        assertEquals(102, star.neighborhood(List.of("x"), 2, GraphData.Direction.BOTH).getGraph().vertexSet().size());
+        assertEquals(Set.of("x", "hub"), star.neighborhood(List.of("x"), 5, GraphData.Direction.OUT).getGraph().vertexSet());
+        assertEquals(Set.of("x"), star.neighborhood(List.of("x"), 5, GraphData.Direction.IN).getGraph().vertexSet());
+        GraphData limited = star.neighborhood(List.of("x"), 2, GraphData.Direction.BOTH, 1000, 10);
+        assertEquals(12, limited.getGraph().vertexSet().size());
+        assertEquals(11, limited.getGraph().edgeSet().size());
+        assertEquals(5, star.neighborhood(List.of("x"), 2, GraphData.Direction.BOTH, 5, 1000).getGraph().vertexSet().size());
+        assertNull(star.neighborhood(List.of("x"), -1, GraphData.Direction.BOTH));
+
+        // Exported like any graph
+        GraphData near = graphApi.neighborhood(List.of("B"), 1, GraphData.Direction.IN);
+        assertEquals(Set.of("A", "B"), near.getGraph().vertexSet());
+        File dot = File.createTempFile("neighborhood", ".dot");
+        dot.deleteOnExit();
+        assertTrue(near.outputDOTGraph(dot.getPath()));
+        GraphData reloaded = new GraphData();
+        assertTrue(reloaded.parseGraph(dot.getPath()));
+        assertEquals(contents(near), contents(reloaded));
+    }
+
+    @Test
+    @DisplayName("Test bfs over a snapshot file with spilled levels")
+    public void TestGraphSearchOnDisk() throws Exception {
+        GraphData graph = new GraphData(GraphData.Storage.COMPACT);
+        Random random = new Random(25);
+        int n = 3000;
+        for (int v = 0; v < n; v++) {
+            graph.addNode("v" + v);
+        }
+        for (int i = 0; i < 4 * n; i++) {
+            graph.addEdge("v" + random.nextInt(n), "v" + random.nextInt(n));
+        }
+        // A long tail reached only through one node
+        for (int v = 0; v < 20; v++) {
+            graph.addNode("t" + v);
+            graph.addEdge(v == 0 ? "v0" : "t" + (v - 1), "t" + v);
+        }
+        File file = File.createTempFile("external", ".snap");
+        file.deleteOnExit();
+        assertTrue(graph.saveSnapshot(file.getPath()));
+        // A budget below the smallest buffer spills every large level to disk
+        for (long budget : new long[] {0, 1 << 24}) {
+            for (int q = 0; q < 20; q++) {
+                String src = "v" + random.nextInt(n);
+                String dst = q == 0 ? "t19" : "v" + random.nextInt(n);
+                Path expected = graph.GraphSearch(src, dst, GraphData.Algorithm.BFS);
+                Path found = graph.GraphSearchOnDisk(file.getPath(), src, dst, budget);
+                assertEquals(expected == null ? null : expected.path, found == null ? null : found.path);
+            }
+        }
+        // Disk traffic is reported with the other search metrics; in-memory searches have none
+        List<SearchMetrics> seen = new ArrayList<>();
+        graph.setSearchListener(seen::add);
+        graph.GraphSearchOnDisk(file.getPath(), "v0", "t19", 0);
+        graph.GraphSearch("v0", "t19", GraphData.Algorithm.BFS);
+        graph.setSearchListener(null);
+        assertTrue(seen.get(0).bytesRead() > Files.size(file.toPath()));
+        assertTrue(seen.get(0).bytesWritten() > 0);
+        assertEquals(0, seen.get(1).bytesRead());
+        assertEquals(0, seen.get(1).bytesWritten());
+
+        graph.addNode("alone");
+        assertTrue(graph.saveSnapshot(file.getPath()));
+        assertNull(graph.GraphSearchOnDisk(file.getPath(), "v0", "alone", 0));
+        assertEquals(List.of("v3"), graph.GraphSearchOnDisk(file.getPath(), "v3", "v3", 0).path);
+        assertNull(graph.GraphSearchOnDisk(file.getPath(), "v0", "missing", 0));
+        assertNull(graph.GraphSearchOnDisk(file.getPath() + ".none", "v0", "v1", 0));
+        // Nothing is left behind next to the file
+        File[] left = file.getParentFile().listFiles((dir, name) -> name.startsWith("bfs"));
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    // Nodes and edges regardless of storage order
+    private static Set<String> contents(GraphData graph) {
+        Set<String> contents = new HashSet<>(graph.getGraph().vertexSet());
+        for (DefaultEdge e : graph.getGraph().edgeSet()) {
+            contents.add(graph.getGraph().getEdgeSource(e) + "->" + graph.getGraph().getEdgeTarget(e));
+        }
+        return contents;
+    }
+
 }